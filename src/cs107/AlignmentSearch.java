@@ -0,0 +1,95 @@
+package cs107;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Searches the alignments of two templates in parallel on a given pool.
+ * <p>
+ * Each alignment is a minutia of the first template, a minutia of the second
+ * one and a rotation around their angle difference, numbered from
+ * <code>0</code> to <code>size1 * size2 * rotations</code>. The range of
+ * numbers is split in halves until the tasks are small enough, so the tasks
+ * are balanced whatever the sizes of the templates. As soon as one alignment
+ * matches, all the tasks see it and return without checking their other
+ * alignments.
+ *
+ * @see Fingerprint#match(MinutiaeTemplate, MinutiaeTemplate, ForkJoinPool)
+ */
+final class AlignmentSearch extends RecursiveTask<Boolean> {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The number of alignments below which a task is not split anymore.
+     */
+    private static final int LEAF_ALIGNMENTS = 512;
+
+    private final MinutiaeTemplate template1;
+    private final MinutiaeTemplate template2;
+    private final AtomicBoolean found;
+    private final int rotations;
+    private final long from;
+    private final long to;
+
+    private AlignmentSearch(MinutiaeTemplate template1, MinutiaeTemplate template2, AtomicBoolean found,
+                            int rotations, long from, long to) {
+        this.template1 = template1;
+        this.template2 = template2;
+        this.found = found;
+        this.rotations = rotations;
+        this.from = from;
+        this.to = to;
+    }
+
+    /**
+     * Compares the templates of two fingerprints.
+     *
+     * @param template1 the template of the first fingerprint.
+     * @param template2 the template of the second fingerprint.
+     * @param pool      the pool running the search.
+     * @return <code>true</code> if they match, like
+     * {@link Fingerprint#match(MinutiaeTemplate, MinutiaeTemplate)}.
+     */
+    static boolean match(MinutiaeTemplate template1, MinutiaeTemplate template2, ForkJoinPool pool) {
+        // the offset is read once, so that all the tasks agree on it
+        int rotations = 2 * Fingerprint.MATCH_ANGLE_OFFSET + 1;
+        long alignments = (long) template1.size() * template2.size() * rotations;
+        return pool.invoke(new AlignmentSearch(template1, template2, new AtomicBoolean(), rotations, 0, alignments));
+    }
+
+    @Override
+    protected Boolean compute() {
+        if (found.get()) return true;
+        if (to - from <= LEAF_ALIGNMENTS) {
+            for (long alignment = from; alignment < to; ) {
+                // the alignments of a pair are consecutive, the pair is only checked once for all of them
+                long pair = alignment / rotations;
+                long pairEnd = Math.min(to, (pair + 1) * rotations);
+                int i = (int) (pair / template2.size());
+                int j = (int) (pair % template2.size());
+                if (!MinutiaeTemplate.canAnchor(template1, i, template2, j)) {
+                    alignment = pairEnd;
+                    continue;
+                }
+                int firstRotation = template2.angle(j) - template1.angle(i) - (rotations - 1) / 2;
+                for (; alignment < pairEnd; alignment++) {
+                    if (found.get()) return true; // another task already matched
+                    int rotation = firstRotation + (int) (alignment % rotations);
+                    if (Fingerprint.aligns(template1, i, template2, j, rotation)) {
+                        found.set(true);
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+        long middle = (from + to) >>> 1;
+        var left = new AlignmentSearch(template1, template2, found, rotations, from, middle);
+        left.fork();
+        boolean matched = new AlignmentSearch(template1, template2, found, rotations, middle, to).compute();
+        // once a match is found, the left task checks no more alignments and the join is immediate
+        return left.join() || matched;
+    }
+}
@@ -0,0 +1,92 @@
+package cs107;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntFunction;
+
+/**
+ * Runs the bands of an image in parallel on a given pool, one fork/join task
+ * per band.
+ * <p>
+ * The tasks are submitted to the pool with
+ * {@link ForkJoinPool#invoke(java.util.concurrent.ForkJoinTask)}, so they
+ * always run on it, even when the caller is a worker of another pool.
+ *
+ * @see Thinning#thinParallel(boolean[][], ForkJoinPool)
+ * @see Fingerprint#extract(boolean[][], ForkJoinPool)
+ */
+final class Bands {
+
+    private Bands() {
+    }
+
+    /**
+     * Runs a function on each band and waits for all of them.
+     *
+     * @param pool  the pool running the bands.
+     * @param count the number of bands.
+     * @param band  the function run on each band, given its index.
+     * @param <T>   the type of the result of a band.
+     * @return the results of the bands, in the order of the bands.
+     */
+    static <T> List<T> invoke(ForkJoinPool pool, int count, IntFunction<T> band) {
+        assert pool != null && band != null;
+        var results = new ArrayList<T>(Collections.nCopies(count, null));
+        pool.invoke(new AllBands<>(count, band, results));
+        return results;
+    }
+
+    /**
+     * Forks the task of every band, then joins them.
+     */
+    private static final class AllBands<T> extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int count;
+        private final IntFunction<T> band;
+        private final List<T> results;
+
+        private AllBands(int count, IntFunction<T> band, List<T> results) {
+            this.count = count;
+            this.band = band;
+            this.results = results;
+        }
+
+        @Override
+        protected void compute() {
+            var tasks = new ArrayList<Band<T>>(count);
+            for (int index = 0; index < count; index++)
+                tasks.add(new Band<>(index, band, results));
+            invokeAll(tasks);
+        }
+    }
+
+    /**
+     * Runs the function of one band and stores its result at the index of the
+     * band. Each task writes another element, and joining the tasks makes
+     * their writes visible.
+     */
+    private static final class Band<T> extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int index;
+        private final IntFunction<T> band;
+        private final List<T> results;
+
+        private Band(int index, IntFunction<T> band, List<T> results) {
+            this.index = index;
+            this.band = band;
+            this.results = results;
+        }
+
+        @Override
+        protected void compute() {
+            results.set(index, band.apply(index));
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package cs107;
+
+import java.util.Arrays;
+
+/**
+ * Bit-packed binary image storing 64 pixels per <code>long</code>.
+ * <p>
+ * The pixel at <code>(row, col)</code> is the bit <code>col % 64</code> of the
+ * word <code>row * wordsPerRow() + col / 64</code>. Black pixels are
+ * <code>1</code> (<code>true</code>) and white pixels are <code>0</code>
+ * (<code>false</code>), as in the <code>boolean[][]</code> representation.
+ * <p>
+ * The bits past the last column of a row are always white, so whole words can
+ * be combined without masking the end of each row.
+ */
+public final class BinaryImage {
+
+    private final int height;
+    private final int width;
+    private final int wordsPerRow;
+    private final long[] words;
+
+    /**
+     * Creates a white image.
+     *
+     * @param height the number of rows.
+     * @param width  the number of columns.
+     */
+    public BinaryImage(int height, int width) {
+        assert height > 0 && width > 0;
+        this.height = height;
+        this.width = width;
+        this.wordsPerRow = (width + 63) >>> 6;
+        this.words = new long[height * wordsPerRow];
+    }
+
+    /**
+     * Packs a <code>boolean[][]</code> image.
+     *
+     * @param image array containing each pixel's boolean value.
+     * @return the packed image.
+     */
+    public static BinaryImage fromBoolean(boolean[][] image) {
+        assert image != null;
+        var packed = new BinaryImage(image.length, image[0].length);
+        for (int row = 0; row < packed.height; row++)
+            packed.setRow(row, image[row]);
+        return packed;
+    }
+
+    /**
+     * Unpacks this image.
+     *
+     * @return array containing each pixel's boolean value.
+     */
+    public boolean[][] toBoolean() {
+        boolean[][] image = new boolean[height][width];
+        for (int row = 0; row < height; row++) {
+            int base = row * wordsPerRow;
+            for (int col = 0; col < width; col++)
+                image[row][col] = (words[base + (col >>> 6)] & (1L << col)) != 0;
+        }
+        return image;
+    }
+
+    /**
+     * @return the number of rows.
+     */
+    public int height() {
+        return height;
+    }
+
+    /**
+     * @return the number of columns.
+     */
+    public int width() {
+        return width;
+    }
+
+    /**
+     * @return the number of words used to store a row.
+     */
+    public int wordsPerRow() {
+        return wordsPerRow;
+    }
+
+    /**
+     * Direct access to the packed pixels, see the class documentation for the
+     * layout. Callers must keep the bits past the last column white.
+     *
+     * @return the backing array.
+     */
+    long[] words() {
+        return words;
+    }
+
+    /**
+     * @param row the row of the pixel.
+     * @param col the column of the pixel.
+     * @return <code>true</code> if the pixel is black.
+     */
+    public boolean get(int row, int col) {
+        assert row >= 0 && row < height && col >= 0 && col < width;
+        return (words[row * wordsPerRow + (col >>> 6)] & (1L << col)) != 0;
+    }
+
+    /**
+     * @param row   the row of the pixel.
+     * @param col   the column of the pixel.
+     * @param value <code>true</code> for black, <code>false</code> for white.
+     */
+    public void set(int row, int col, boolean value) {
+        assert row >= 0 && row < height && col >= 0 && col < width;
+        int index = row * wordsPerRow + (col >>> 6);
+        if (value) words[index] |= 1L << col;
+        else words[index] &= ~(1L << col);
+    }
+
+    /**
+     * Overwrites a whole row.
+     *
+     * @param row    the row to overwrite.
+     * @param values the value of each pixel of the row, at least
+     *               <code>width()</code> long.
+     */
+    public void setRow(int row, boolean[] values) {
+        assert values != null && values.length >= width;
+        int base = row * wordsPerRow;
+        for (int word = 0; word < wordsPerRow; word++) {
+            long bits = 0;
+            int end = Math.min(width, (word + 1) << 6);
+            for (int col = word << 6; col < end; col++)
+                if (values[col]) bits |= 1L << col;
+            words[base + word] = bits;
+        }
+    }
+
+    /**
+     * @return the number of black pixels.
+     */
+    public int count() {
+        int count = 0;
+        for (long word : words)
+            count += Long.bitCount(word);
+        return count;
+    }
+
+    /**
+     * @return a deep copy of this image.
+     */
+    public BinaryImage copy() {
+        var copy = new BinaryImage(height, width);
+        System.arraycopy(words, 0, copy.words, 0, words.length);
+        return copy;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) return true;
+        if (!(other instanceof BinaryImage)) return false;
+        var image = (BinaryImage) other;
+        return height == image.height && width == image.width && Arrays.equals(words, image.words);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * height + width) + Arrays.hashCode(words);
+    }
+}
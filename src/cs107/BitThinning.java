@@ -0,0 +1,150 @@
+package cs107;
+
+/**
+ * Zhang-Suen thinning on {@link BinaryImage}, evaluating 64 pixels at once.
+ * <p>
+ * For each word of a row, the 8 neighbours of its 64 pixels are obtained as
+ * words by shifting the current, previous and next row words by one bit, using
+ * the same indices as {@link Fingerprint#getNeighbours(boolean[][], int, int)}.
+ * The conditions of {@link Fingerprint#thinningStep(boolean[][], int)} are
+ * then evaluated with bitwise operations only, so the skeletons are identical
+ * to the ones of {@link Fingerprint#thin(boolean[][])}.
+ */
+public final class BitThinning {
+
+    private BitThinning() {
+    }
+
+    /**
+     * Compute the skeleton of a boolean image.
+     *
+     * @param image array containing each pixel's boolean value.
+     * @return array containing the boolean value of each pixel of the image after
+     * applying the thinning algorithm.
+     * @see Fingerprint#thin(boolean[][])
+     */
+    public static boolean[][] thin(boolean[][] image) {
+        assert image != null;
+        return thin(BinaryImage.fromBoolean(image)).toBoolean();
+    }
+
+    /**
+     * Compute the skeleton of a packed image.
+     *
+     * @param image the packed image, it is not modified.
+     * @return a new packed image containing the skeleton.
+     */
+    public static BinaryImage thin(BinaryImage image) {
+        assert image != null;
+        var current = image.copy();
+        var scratch = new BinaryImage(image.height(), image.width());
+        int deleted;
+        do { // the second step writes back into current, so no swap is needed
+            deleted = thinningStep(current, scratch, 0);
+            deleted += thinningStep(scratch, current, 1);
+        } while (deleted != 0); // repeat if there was a change
+        return current;
+    }
+
+    /**
+     * Applies one Zhang-Suen sub-iteration.
+     *
+     * @param source the image before the step, it is not modified.
+     * @param target the image receiving the result, with the same dimensions as
+     *               <code>source</code>.
+     * @param step   the step to apply, Step 0 or Step 1.
+     * @return the number of pixels that were deleted.
+     */
+    public static int thinningStep(BinaryImage source, BinaryImage target, int step) {
+        assert source != null && target != null && source != target;
+        assert source.height() == target.height() && source.width() == target.width();
+        final long[] in = source.words();
+        final long[] out = target.words();
+        final int height = source.height();
+        final int wordsPerRow = source.wordsPerRow();
+        int deleted = 0;
+        for (int row = 0; row < height; row++) {
+            int base = row * wordsPerRow;
+            int above = row > 0 ? base - wordsPerRow : -1; // -1 when out of the image (white)
+            int below = row < height - 1 ? base + wordsPerRow : -1;
+            for (int word = 0; word < wordsPerRow; word++) {
+                long centre = in[base + word];
+                if (centre == 0) { // white pixels never change
+                    out[base + word] = 0;
+                    continue;
+                }
+                boolean hasPrevious = word > 0;
+                boolean hasNext = word < wordsPerRow - 1;
+                // @formatter:off
+                long north      = above < 0                 ? 0 : in[above + word    ];
+                long northPrev  = above < 0 || !hasPrevious ? 0 : in[above + word - 1];
+                long northNext  = above < 0 || !hasNext     ? 0 : in[above + word + 1];
+                long south      = below < 0                 ? 0 : in[below + word    ];
+                long southPrev  = below < 0 || !hasPrevious ? 0 : in[below + word - 1];
+                long southNext  = below < 0 || !hasNext     ? 0 : in[below + word + 1];
+                long centrePrev =              !hasPrevious ? 0 : in[base  + word - 1];
+                long centreNext =              !hasNext     ? 0 : in[base  + word + 1];
+
+                // p0 - p7, bit i of each word is the neighbour of the pixel at bit i
+                long p0 = north;
+                long p1 = east(north,  northNext);
+                long p2 = east(centre, centreNext);
+                long p3 = east(south,  southNext);
+                long p4 = south;
+                long p5 = west(south,  southPrev);
+                long p6 = west(centre, centrePrev);
+                long p7 = west(north,  northPrev);
+                // @formatter:on
+
+                // "any" and "many" accumulate whether at least one and at least two inputs are set,
+                // at least 7 black neighbours is at most one white one
+                long anyBlack = p0, manyBlack = 0;
+                long anyWhite = ~p0, manyWhite = 0;
+                // @formatter:off
+                manyBlack |= anyBlack & p1; anyBlack |= p1;   manyWhite |= anyWhite & ~p1; anyWhite |= ~p1;
+                manyBlack |= anyBlack & p2; anyBlack |= p2;   manyWhite |= anyWhite & ~p2; anyWhite |= ~p2;
+                manyBlack |= anyBlack & p3; anyBlack |= p3;   manyWhite |= anyWhite & ~p3; anyWhite |= ~p3;
+                manyBlack |= anyBlack & p4; anyBlack |= p4;   manyWhite |= anyWhite & ~p4; anyWhite |= ~p4;
+                manyBlack |= anyBlack & p5; anyBlack |= p5;   manyWhite |= anyWhite & ~p5; anyWhite |= ~p5;
+                manyBlack |= anyBlack & p6; anyBlack |= p6;   manyWhite |= anyWhite & ~p6; anyWhite |= ~p6;
+                manyBlack |= anyBlack & p7; anyBlack |= p7;   manyWhite |= anyWhite & ~p7; anyWhite |= ~p7;
+
+                // exactly one white to black transition, going around the neighbours
+                long transition = ~p0 & p1;
+                long anyTransition = transition, manyTransitions = 0;
+                transition = ~p1 & p2; manyTransitions |= anyTransition & transition; anyTransition |= transition;
+                transition = ~p2 & p3; manyTransitions |= anyTransition & transition; anyTransition |= transition;
+                transition = ~p3 & p4; manyTransitions |= anyTransition & transition; anyTransition |= transition;
+                transition = ~p4 & p5; manyTransitions |= anyTransition & transition; anyTransition |= transition;
+                transition = ~p5 & p6; manyTransitions |= anyTransition & transition; anyTransition |= transition;
+                transition = ~p6 & p7; manyTransitions |= anyTransition & transition; anyTransition |= transition;
+                transition = ~p7 & p0; manyTransitions |= anyTransition & transition; anyTransition |= transition;
+                // @formatter:on
+                long oneTransition = anyTransition & ~manyTransitions;
+
+                long stepCondition = step == 0
+                    ? ~(p2 & p4 & (p0 | p6))
+                    : ~(p0 & p6 & (p2 | p4));
+
+                long delete = centre & manyBlack & manyWhite & oneTransition & stepCondition;
+                out[base + word] = centre & ~delete;
+                deleted += Long.bitCount(delete);
+            }
+        }
+        return deleted;
+    }
+
+    /**
+     * @return for each bit, the pixel one column to the right.
+     */
+    private static long east(long word, long next) {
+        return (word >>> 1) | (next << 63);
+    }
+
+    /**
+     * @return for each bit, the pixel one column to the left.
+     */
+    private static long west(long word, long previous) {
+        return (word << 1) | (previous >>> 63);
+    }
+}
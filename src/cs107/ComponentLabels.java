@@ -0,0 +1,155 @@
+package cs107;
+
+import java.util.Arrays;
+
+/**
+ * The 8-connected components of a skeleton, labelled once for the whole image.
+ * <p>
+ * The labels are computed with two passes and a union-find over provisional
+ * labels. They can then replace
+ * {@link Fingerprint#connectedPixels(boolean[][], int, int, int)} when
+ * computing the orientation of many minutiae, see
+ * {@link Fingerprint#extract(boolean[][], ComponentLabels)}.
+ * <p>
+ * Unlike <code>connectedPixels</code>, two pixels of the same component are
+ * connected even if the path between them leaves the window around the
+ * minutia. Ridges often join outside of the window, so this changes the
+ * orientation of about one minutia in eight on
+ * <code>src/resources/fingerprints</code>, half of them by more than
+ * {@link Fingerprint#ORIENTATION_THRESHOLD}.
+ */
+public final class ComponentLabels {
+
+    /**
+     * The label of each pixel, <code>0</code> for white pixels and
+     * <code>1</code> to {@link #count()} for black ones.
+     */
+    private final int[][] labels;
+    private final int count;
+
+    private ComponentLabels(int[][] labels, int count) {
+        this.labels = labels;
+        this.count = count;
+    }
+
+    /**
+     * Labels the connected components of an image.
+     *
+     * @param image array containing each pixel's boolean value.
+     * @return the labels of the image.
+     */
+    public static ComponentLabels of(boolean[][] image) {
+        assert image != null;
+        final int height = image.length;
+        final int width = image[0].length;
+        int[][] labels = new int[height][width];
+        // parents of the provisional labels, a label is a root if it is its own parent
+        int[] parents = new int[16];
+        int provisional = 0;
+
+        // first pass: label each pixel from its neighbours already visited, and merge their labels
+        for (int row = 0; row < height; row++)
+            for (int col = 0; col < width; col++) {
+                if (!image[row][col]) continue;
+                int label = 0;
+                // @formatter:off
+                if (col > 0                     ) label = union(parents, label, labels[row    ][col - 1]);
+                if (row > 0 && col > 0          ) label = union(parents, label, labels[row - 1][col - 1]);
+                if (row > 0                     ) label = union(parents, label, labels[row - 1][col    ]);
+                if (row > 0 && col < width - 1  ) label = union(parents, label, labels[row - 1][col + 1]);
+                // @formatter:on
+                if (label == 0) { // no black neighbour yet, start a new component
+                    if (++provisional == parents.length)
+                        parents = Arrays.copyOf(parents, parents.length * 2);
+                    parents[provisional] = provisional;
+                    label = provisional;
+                }
+                labels[row][col] = label;
+            }
+
+        // second pass: replace each provisional label by its root, numbered from 1
+        int[] finalLabels = new int[provisional + 1];
+        int count = 0;
+        for (int label = 1; label <= provisional; label++) {
+            int root = find(parents, label);
+            if (finalLabels[root] == 0) finalLabels[root] = ++count;
+            finalLabels[label] = finalLabels[root];
+        }
+        for (int[] row : labels)
+            for (int col = 0; col < width; col++)
+                row[col] = finalLabels[row[col]];
+        return new ComponentLabels(labels, count);
+    }
+
+    /**
+     * Merges the components of two provisional labels.
+     *
+     * @return the root of the merged component, or the non-zero label if one of
+     * them is <code>0</code>.
+     */
+    private static int union(int[] parents, int label1, int label2) {
+        if (label2 == 0) return label1;
+        int root2 = find(parents, label2);
+        if (label1 == 0) return root2;
+        int root1 = find(parents, label1);
+        if (root1 == root2) return root1;
+        // keep the smallest label as root, so that roots are always visited first
+        int root = Math.min(root1, root2);
+        parents[Math.max(root1, root2)] = root;
+        return root;
+    }
+
+    /**
+     * @return the root of a provisional label, compressing the path to it.
+     */
+    private static int find(int[] parents, int label) {
+        int root = label;
+        while (parents[root] != root)
+            root = parents[root];
+        while (parents[label] != root) {
+            int parent = parents[label];
+            parents[label] = root;
+            label = parent;
+        }
+        return root;
+    }
+
+    /**
+     * @return the number of components.
+     */
+    public int count() {
+        return count;
+    }
+
+    /**
+     * @param row the row of the pixel.
+     * @param col the column of the pixel.
+     * @return the label of the pixel, <code>0</code> if it is white.
+     */
+    public int label(int row, int col) {
+        return labels[row][col];
+    }
+
+    /**
+     * Computes the pixels within the given distance of the pixel at coordinate
+     * <code>(row, col)</code> that belong to its component.
+     *
+     * @param row      the first coordinate of the pixel of interest.
+     * @param col      the second coordinate of the pixel of interest.
+     * @param distance the maximum distance at which a pixel is considered.
+     * @return An array where <code>true</code> means that the pixel is within
+     * <code>distance</code> and in the same component as the pixel at
+     * <code>(row, col)</code>.
+     * @see Fingerprint#connectedPixels(boolean[][], int, int, int)
+     */
+    public boolean[][] connectedPixels(int row, int col, int distance) {
+        var squareSideLength = (2 * distance) + 1;
+        boolean[][] relevant = new boolean[squareSideLength][squareSideLength];
+        int label = labels[row][col];
+        if (label == 0) return relevant;
+        for (int imageRow = Math.max(0, row - distance); imageRow <= Math.min(labels.length - 1, row + distance); imageRow++)
+            for (int imageCol = Math.max(0, col - distance); imageCol <= Math.min(labels[0].length - 1, col + distance); imageCol++)
+                relevant[imageRow - row + distance][imageCol - col + distance] = labels[imageRow][imageCol] == label;
+        return relevant;
+    }
+}
@@ -1,10 +1,8 @@
 package cs107;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.stream.Collectors;
+import java.util.concurrent.ForkJoinPool;
 import java.util.stream.IntStream;
 
 /**
@@ -40,6 +38,95 @@ public class Fingerprint {
      */
     public static int MATCH_ANGLE_OFFSET = 2;
 
+    /**
+     * The ways of comparing two templates.
+     */
+    public enum MatchEngine {
+        /**
+         * Every alignment of a pair of minutiae is checked, see
+         * {@link #match(MinutiaeTemplate, MinutiaeTemplate)}.
+         */
+        EXHAUSTIVE,
+        /**
+         * The pairs of minutiae vote for their alignment, and only the most voted
+         * alignments are checked.
+         */
+        HOUGH
+    }
+
+    /**
+     * The type of a minutia where a ridge ends, stored as the fourth element of
+     * the minutiae returned by {@link #extract(boolean[][])}. It is its number
+     * of transitions.
+     */
+    public static final int ENDING = 1;
+
+    /**
+     * The type of a minutia where a ridge splits in two, stored as the fourth
+     * element of the minutiae returned by {@link #extract(boolean[][])}. It is
+     * its number of transitions.
+     */
+    public static final int BIFURCATION = 3;
+
+    /**
+     * The minimum number of rows processed by one task of
+     * {@link #extract(boolean[][], ForkJoinPool)}.
+     */
+    private static final int EXTRACT_MIN_BAND_HEIGHT = 16;
+
+    /**
+     * The largest rotation, in absolute value, whose sine and cosine are read
+     * from {@link #SIN} and {@link #COS}. Rotations in {@link #match(List, List)}
+     * are differences of two orientations plus an offset, so they stay in this
+     * range.
+     */
+    private static final int TABLE_ROTATION = 720;
+
+    /**
+     * The sine and cosine of each rotation in degrees from
+     * <code>-TABLE_ROTATION</code> to <code>TABLE_ROTATION</code>, at index
+     * <code>rotation + TABLE_ROTATION</code>. They are computed from the rotation
+     * itself rather than from the rotation modulo <code>360</code>, so they are
+     * exactly the values computed without the tables.
+     */
+    private static final double[] SIN = new double[2 * TABLE_ROTATION + 1];
+    private static final double[] COS = new double[2 * TABLE_ROTATION + 1];
+
+    static {
+        for (int rotation = -TABLE_ROTATION; rotation <= TABLE_ROTATION; rotation++) {
+            double rotationRad = Math.toRadians(rotation);
+            SIN[rotation + TABLE_ROTATION] = Math.sin(rotationRad);
+            COS[rotation + TABLE_ROTATION] = Math.cos(rotationRad);
+        }
+    }
+
+    /**
+     * The number of transitions of each neighbourhood, as packed by
+     * {@link Thinning#neighbourhood(boolean[][], int, int)}.
+     */
+    private static final byte[] TRANSITIONS = new byte[256];
+
+    static {
+        for (int neighbourhood = 0; neighbourhood < 256; neighbourhood++) {
+            boolean[] neighbours = new boolean[8];
+            for (int i = 0; i < 8; i++)
+                neighbours[i] = (neighbourhood & (1 << i)) != 0;
+            TRANSITIONS[neighbourhood] = (byte) transitions(neighbours);
+        }
+    }
+
+    /**
+     * Per-thread queue of {@link #connectedPixels(boolean[][], int, int, int)},
+     * reused from one call to the next.
+     */
+    private static final ThreadLocal<IntList> CONNECTED_PIXELS_QUEUE = ThreadLocal.withInitial(() -> new IntList(64));
+
+    /**
+     * Per-thread coordinates of the pixels used to compute an orientation,
+     * reused from one call to the next.
+     */
+    private static final ThreadLocal<int[]> ORIENTATION_POINTS = ThreadLocal.withInitial(() -> new int[0]);
+
     /**
      * Returns an array containing the value of the 8 neighbours of the pixel at
      * coordinates <code>(row, col)</code>.
@@ -170,14 +257,8 @@ public class Fingerprint {
      */
     public static boolean [][] thin(boolean [][] image) {
         assert image != null;
-        boolean[][] previous; // define the dimensions of the image
-        do {
-            previous = Arrays.stream(image).map(boolean[]::clone).toArray(boolean[][]::new);
-            for (int row = 0; row < image.length; row++) // store the image's current state
-                previous[row] = image[row].clone();
-            image = thinningStep(thinningStep(image, 0), 1); // run both thinning steps
-        } while (!identical(previous, image)); // repeat if there was a change
-        return image;
+        // same steps as thinningStep, without allocating an image per step
+        return Thinning.thin(image);
     }
 
     /**
@@ -230,27 +311,32 @@ public class Fingerprint {
     public static boolean [][] connectedPixels(boolean[][] image, int row, int col, int distance) {
         assert image != null;
         var squareSideLength = (2 * distance) + 1;
-        // create a square clone of a subset of the image centered on the pixel and squareSideLength wide
-        var clone = subClone(
-            image,
-            row - distance, // new center of sub image
-            col - distance,
-            squareSideLength
-        );
-        // set an empty array with the same center pixel as in clone
         boolean[][] relevant = new boolean[squareSideLength][squareSideLength];
-        relevant[distance][distance] = image[row][col];
-        boolean[][] previousArray; // declared outside of loop scope so that it can be used in the check
-        do {
-            previousArray = subClone(relevant, 0, 0, squareSideLength); // clone relevant to remember it
-            IntStream
-                .range(0, squareSideLength)
-                .forEach(rowIndex -> IntStream
-                    .range(0, squareSideLength)
-                    .forEach(colIndex -> // make every pixel "infect" its true neighbours if it is true
-                        spreadCentrePixel(clone, relevant, rowIndex, colIndex)
-                    ));
-        } while (!identical(previousArray, relevant)); // repeat if there was a change
+        if (!image[row][col]) return relevant; // a white pixel isn't connected to anything
+
+        // breadth-first search from the centre, pixels are queued as rowIndex * squareSideLength + colIndex
+        IntList queue = CONNECTED_PIXELS_QUEUE.get();
+        queue.clear();
+        relevant[distance][distance] = true;
+        queue.add(distance * squareSideLength + distance);
+        for (int head = 0; head < queue.size(); head++) { // each pixel is queued once, when it becomes relevant
+            int rowIndex = queue.get(head) / squareSideLength;
+            int colIndex = queue.get(head) % squareSideLength;
+            // @formatter:off
+            for (int neighbourRow = Math.max(0, rowIndex - 1); neighbourRow <= Math.min(squareSideLength - 1, rowIndex + 1); neighbourRow++)
+                for (int neighbourCol = Math.max(0, colIndex - 1); neighbourCol <= Math.min(squareSideLength - 1, colIndex + 1); neighbourCol++) {
+                    int imageRow = row - distance + neighbourRow; // coordinates of the neighbour in the image
+                    int imageCol = col - distance + neighbourCol;
+                    if (relevant[neighbourRow][neighbourCol]
+                        || imageRow < 0 || imageRow >= image.length
+                        || imageCol < 0 || imageCol >= image[0].length
+                        || !image[imageRow][imageCol]
+                    ) continue;
+                    relevant[neighbourRow][neighbourCol] = true;
+                    queue.add(neighbourRow * squareSideLength + neighbourCol);
+                }
+            // @formatter:on
+        }
         return relevant;
     }
 
@@ -316,36 +402,32 @@ public class Fingerprint {
      */
     public static double computeSlope(boolean [][] connectedPixels, int row, int col) {
         assert connectedPixels != null;
-        var xValues = new ArrayList<Integer>();
-        var yValues = new ArrayList<Integer>();
-
-        IntStream
-            .range(0, connectedPixels.length)
-            .forEach(rowIndex -> IntStream
-                .range(0, connectedPixels[0].length)
-                // only if the pixel is true
-                .filter(colIndex -> connectedPixels[rowIndex][colIndex])
-                // and only if the pixel isn't the minutia in question
-                .filter(colIndex -> !(rowIndex == row && colIndex == col))
-                .forEach(colIndex -> { // add an adjusted value to the list
-                    xValues.add(colIndex - col);
-                    yValues.add(row - rowIndex);
-                }));
-
-        // sum of x times y
-        double xySum = IntStream
-            .range(0, xValues.size())
-            .mapToDouble(i -> xValues.get(i) * yValues.get(i))
-            .sum();
-
-        // the sum of the squares of x and y
-        double xSquared = xValues.stream()
-            .mapToDouble(i -> i * i)
-            .sum();
-        double ySquared = yValues.stream()
-            .mapToDouble(i -> i * i)
-            .sum();
+        // the sums are exact in a long, and so once converted to double
+        long xySum = 0;
+        long xSquared = 0;
+        long ySquared = 0;
+        for (int rowIndex = 0; rowIndex < connectedPixels.length; rowIndex++)
+            for (int colIndex = 0; colIndex < connectedPixels[0].length; colIndex++) {
+                // only if the pixel is true and isn't the minutia in question
+                if (!connectedPixels[rowIndex][colIndex] || (rowIndex == row && colIndex == col)) continue;
+                int x = colIndex - col; // adjusted coordinates
+                int y = row - rowIndex;
+                xySum += x * y;
+                xSquared += x * x;
+                ySquared += y * y;
+            }
+        return slope(xySum, xSquared, ySquared);
+    }
 
+    /**
+     * The linear regression of {@link #computeSlope(boolean[][], int, int)}.
+     *
+     * @param xySum    the sum of x times y.
+     * @param xSquared the sum of the squares of x.
+     * @param ySquared the sum of the squares of y.
+     * @return the slope.
+     */
+    static double slope(double xySum, double xSquared, double ySquared) {
         // @formatter:off
         if (xSquared == 0       ) return Double.POSITIVE_INFINITY; // if vertical return infinity
         if (xSquared >= ySquared) return xySum / xSquared;
@@ -366,34 +448,59 @@ public class Fingerprint {
      */
     public static double computeAngle(boolean [][] connectedPixels, int row, int col, double slope) {
         assert connectedPixels != null;
-        // atomics because they're used in a lambda expression below
-        var pixelsAbove = new AtomicInteger();
-        var pixelsUnder = new AtomicInteger();
-        IntStream
-            .range(0, connectedPixels.length)
-            .forEach(rowIndex -> IntStream
-                .range(0, connectedPixels[0].length)
-                .filter(colIndex -> connectedPixels[rowIndex][colIndex]) // only if the pixel is true
-                .filter(colIndex -> !(rowIndex == row && colIndex == col)) // and it's not the origin
-                .forEach(colIndex -> {
-                    int x = colIndex - col; // make its coordinates relative to the new origin
-                    int y = row - rowIndex;
-                    if (y >= (-1 / slope) * x)
-                        pixelsAbove.getAndIncrement(); // if it's above the normal increment pixelsAbove
-                    else
-                        pixelsUnder.getAndIncrement(); // if not increment pixels below
-                }));
+        int pixelsAbove = 0;
+        int pixelsUnder = 0;
+        for (int rowIndex = 0; rowIndex < connectedPixels.length; rowIndex++)
+            for (int colIndex = 0; colIndex < connectedPixels[0].length; colIndex++) {
+                // only if the pixel is true and it's not the origin
+                if (!connectedPixels[rowIndex][colIndex] || (rowIndex == row && colIndex == col)) continue;
+                if (isAbove(colIndex - col, row - rowIndex, slope)) // coordinates relative to the new origin
+                    pixelsAbove++;
+                else
+                    pixelsUnder++;
+            }
+        return angle(slope, pixelsAbove, pixelsUnder);
+    }
+
+    /**
+     * @param x     the coordinate relative to the minutia, to the right.
+     * @param y     the coordinate relative to the minutia, upwards.
+     * @param slope the slope of the minutia.
+     * @return <code>true</code> if the pixel is above the normal of the slope.
+     */
+    static boolean isAbove(int x, int y, double slope) {
+        return y >= (-1 / slope) * x;
+    }
 
+    /**
+     * The orientation of {@link #computeAngle(boolean[][], int, int, double)}.
+     *
+     * @param slope       the slope of the minutia.
+     * @param pixelsAbove the number of pixels above the normal of the slope.
+     * @param pixelsUnder the number of pixels under it.
+     * @return the orientation of the minutia in radians.
+     */
+    static double angle(double slope, int pixelsAbove, int pixelsUnder) {
         if (slope == Double.POSITIVE_INFINITY) // if the line is vertical
-            return (pixelsAbove.get() > pixelsUnder.get() ? Math.PI : -Math.PI) / 2; // return either up or down
+            return (pixelsAbove > pixelsUnder ? Math.PI : -Math.PI) / 2; // return either up or down
 
         double angle = Math.atan(slope);
-        if ((angle > 0 && pixelsUnder.get() > pixelsAbove.get()) // if it's going up and there are more under the line than not
-            || (angle < 0 && pixelsUnder.get() < pixelsAbove.get()) // or going down and more over than under
+        if ((angle > 0 && pixelsUnder > pixelsAbove) // if it's going up and there are more under the line than not
+            || (angle < 0 && pixelsUnder < pixelsAbove) // or going down and more over than under
         ) angle += Math.PI; // flip the angle
         return angle;
     }
 
+    /**
+     * @param angle an orientation in radians.
+     * @return the orientation in degrees, between <code>0</code> and
+     * <code>360</code>.
+     */
+    static int degrees(double angle) {
+        var angleDegrees = (int) Math.round(Math.toDegrees(angle));
+        return angleDegrees < 0 ? angleDegrees + 360 : angleDegrees;
+    }
+
     /**
      * Computes the orientation of the minutia that the coordinate <code>(row,
      * col)</code>.
@@ -407,11 +514,80 @@ public class Fingerprint {
      */
     public static int computeOrientation(boolean[][] image, int row, int col, int distance) {
         assert image != null;
-        var connectedPixels = connectedPixels(image, row, col, distance);
-        var slope = computeSlope(connectedPixels, distance, distance);
-        var angle = computeAngle(connectedPixels, distance, distance, slope);
-        var angleDegrees = (int) Math.round(Math.toDegrees(angle));
-        return angleDegrees < 0 ? angleDegrees + 360 : angleDegrees;
+        // floods the window and computes the regression of its connected pixels in one pass
+        return OrientationEngine.computeOrientation(image, row, col, distance);
+    }
+
+    /**
+     * Computes the orientation of the minutia that the coordinate <code>(row,
+     * col)</code>, taking the pixels of its component from labels computed
+     * beforehand instead of flooding the window.
+     *
+     * @param labels   the labels of the components of the image.
+     * @param row      the first coordinate of the pixel of interest.
+     * @param col      the second coordinate of the pixel of interest.
+     * @param distance the distance to be considered in each direction to compute
+     *                 the orientation.
+     * @return The orientation in degrees.
+     * @see ComponentLabels
+     */
+    public static int computeOrientation(ComponentLabels labels, int row, int col, int distance) {
+        assert labels != null;
+        return computeOrientation(labels.connectedPixels(row, col, distance), distance);
+    }
+
+    /**
+     * Computes the orientation of the minutia that the coordinate <code>(row,
+     * col)</code>, from the orientation field of the image instead of the
+     * regression of its connected pixels.
+     *
+     * @param field    the orientation field of the image.
+     * @param image    array containing each pixel's boolean value.
+     * @param row      the first coordinate of the pixel of interest.
+     * @param col      the second coordinate of the pixel of interest.
+     * @param distance the distance to be considered in each direction to choose
+     *                 the direction of the minutia.
+     * @return The orientation in degrees.
+     * @see OrientationField
+     */
+    public static int computeOrientation(OrientationField field, boolean[][] image, int row, int col, int distance) {
+        assert field != null;
+        return field.orientation(image, row, col, distance);
+    }
+
+    /**
+     * @param connectedPixels the pixels connected to the minutia, centred on it.
+     * @param distance        the distance used to compute them.
+     * @return The orientation in degrees.
+     */
+    private static int computeOrientation(boolean[][] connectedPixels, int distance) {
+        // a single pass over the window accumulates the regression and remembers the pixels,
+        // the slope is needed before they can be counted above or under its normal
+        int[] points = ORIENTATION_POINTS.get();
+        if (points.length < 2 * connectedPixels.length * connectedPixels.length) {
+            points = new int[2 * connectedPixels.length * connectedPixels.length];
+            ORIENTATION_POINTS.set(points);
+        }
+        int count = 0;
+        long xySum = 0;
+        long xSquared = 0;
+        long ySquared = 0;
+        for (int rowIndex = 0; rowIndex < connectedPixels.length; rowIndex++)
+            for (int colIndex = 0; colIndex < connectedPixels[0].length; colIndex++) {
+                if (!connectedPixels[rowIndex][colIndex] || (rowIndex == distance && colIndex == distance)) continue;
+                int x = colIndex - distance;
+                int y = distance - rowIndex;
+                xySum += x * y;
+                xSquared += x * x;
+                ySquared += y * y;
+                points[count++] = x;
+                points[count++] = y;
+            }
+        double slope = slope(xySum, xSquared, ySquared);
+        int pixelsAbove = 0;
+        for (int i = 0; i < count; i += 2)
+            if (isAbove(points[i], points[i + 1], slope)) pixelsAbove++;
+        return degrees(angle(slope, pixelsAbove, count / 2 - pixelsAbove));
     }
 
     /**
@@ -419,31 +595,147 @@ public class Fingerprint {
      *
      * @param image array containing each pixel's boolean value.
      * @return The list of all minutiae. A minutia is represented by an array where
-     * the first element is the row, the second is column, and the third is
-     * the angle in degrees.
+     * the first element is the row, the second is column, the third is
+     * the angle in degrees, and the fourth is its type, {@link #ENDING} or
+     * {@link #BIFURCATION}.
      * @see #thin(boolean[][])
      */
     public static List<int[]> extract(boolean[][] image) {
         assert image != null;
+        int[][] candidates = minutiaCandidates(image, 1, image.length - 1);
+        return minutiae(
+            candidates[0],
+            candidates[1],
+            OrientationEngine.computeOrientations(image, candidates[0], candidates[1], ORIENTATION_DISTANCE),
+            candidates[2]);
+    }
+
+    /**
+     * Extracts the minutiae from a thinned image, as a template.
+     *
+     * @param image array containing each pixel's boolean value.
+     * @return The template of all minutiae, with the same minutiae as
+     * {@link #extract(boolean[][])} and their local descriptors.
+     */
+    public static MinutiaeTemplate extractTemplate(boolean[][] image) {
+        assert image != null;
+        int[][] candidates = minutiaCandidates(image, 1, image.length - 1);
+        return new MinutiaeTemplate(
+            candidates[0],
+            candidates[1],
+            OrientationEngine.computeOrientations(image, candidates[0], candidates[1], ORIENTATION_DISTANCE),
+            candidates[2]).withDescriptors();
+    }
+
+    /**
+     * Extracts the minutiae from a thinned image, computing their orientation
+     * from the labels of the components of the image.
+     *
+     * @param image  array containing each pixel's boolean value.
+     * @param labels the labels of the components of <code>image</code>, see
+     *               {@link ComponentLabels#of(boolean[][])}.
+     * @return The list of all minutiae, as returned by
+     * {@link #extract(boolean[][])}.
+     * @see #computeOrientation(ComponentLabels, int, int, int)
+     */
+    public static List<int[]> extract(boolean[][] image, ComponentLabels labels) {
+        assert image != null;
+        assert labels != null;
+        int[][] candidates = minutiaCandidates(image, 1, image.length - 1);
+        int[] orientations = new int[candidates[0].length];
+        for (int i = 0; i < orientations.length; i++)
+            orientations[i] = computeOrientation(labels, candidates[0][i], candidates[1][i], ORIENTATION_DISTANCE);
+        return minutiae(candidates[0], candidates[1], orientations, candidates[2]);
+    }
+
+    /**
+     * Extracts the minutiae from a thinned image, computing their orientation
+     * from the orientation field of the image.
+     *
+     * @param image array containing each pixel's boolean value.
+     * @param field the orientation field of <code>image</code> or of the image
+     *              it was thinned from, see
+     *              {@link OrientationField#of(boolean[][])}.
+     * @return The list of all minutiae, as returned by
+     * {@link #extract(boolean[][])}.
+     * @see #computeOrientation(OrientationField, boolean[][], int, int, int)
+     */
+    public static List<int[]> extract(boolean[][] image, OrientationField field) {
+        assert image != null;
+        assert field != null;
+        int[][] candidates = minutiaCandidates(image, 1, image.length - 1);
+        int[] orientations = new int[candidates[0].length];
+        for (int i = 0; i < orientations.length; i++)
+            orientations[i] = computeOrientation(field, image, candidates[0][i], candidates[1][i], OrientationField.DIRECTION_DISTANCE);
+        return minutiae(candidates[0], candidates[1], orientations, candidates[2]);
+    }
+
+    /**
+     * Extracts the minutiae from a thinned image, splitting it in bands of rows
+     * processed in parallel.
+     *
+     * @param image array containing each pixel's boolean value.
+     * @param pool  the pool running the bands.
+     * @return The list of all minutiae, in the same order as
+     * {@link #extract(boolean[][])}.
+     */
+    public static List<int[]> extract(boolean[][] image, ForkJoinPool pool) {
+        assert image != null;
+        assert pool != null;
+        int rows = Math.max(0, image.length - 2); // the outer edge is excluded
+        int bandHeight = Math.max(EXTRACT_MIN_BAND_HEIGHT, rows / (4 * pool.getParallelism()) + 1);
+        int bands = (rows + bandHeight - 1) / bandHeight;
+        // one task per band on the given pool, the results are in the order of the bands
+        List<List<int[]>> bandMinutiae = Bands.invoke(pool, bands, band -> {
+            int[][] candidates = minutiaCandidates(
+                image,
+                1 + band * bandHeight,
+                Math.min(image.length - 1, 1 + (band + 1) * bandHeight));
+            return minutiae(
+                candidates[0],
+                candidates[1],
+                OrientationEngine.computeOrientations(image, candidates[0], candidates[1], ORIENTATION_DISTANCE),
+                candidates[2]);
+        });
         var minutiaes = new ArrayList<int[]>();
-        IntStream
-            .range(1, image.length - 1) // for each pixel excluding the outer edge
-            .forEach(row -> IntStream
-                .range(1, image[0].length - 1)
-                .filter(col -> image[row][col]) // if it's part of the fingerprint (i.e. true)
-                .filter(col -> { // if it's a minutia
-                    var neighbors = getNeighbours(image, row, col);
-                    assert neighbors != null;
-                    var transitions = transitions(neighbors);
-                    return transitions == 3 || transitions == 1;
-                })
-                .forEach(col -> // add it to the list
-                    minutiaes.add(new int[]{
-                        row,
-                        col,
-                        computeOrientation(image, row, col, ORIENTATION_DISTANCE)
-                    })
-                ));
+        bandMinutiae.forEach(minutiaes::addAll);
+        return minutiaes;
+    }
+
+    /**
+     * Finds the minutiae of some rows of a thinned image, in row-major order.
+     *
+     * @param image   array containing each pixel's boolean value.
+     * @param fromRow the first row, at least <code>1</code>.
+     * @param toRow   the row after the last one, at most
+     *                <code>image.length - 1</code>.
+     * @return the rows of the minutiae, then their columns, then their types.
+     */
+    private static int[][] minutiaCandidates(boolean[][] image, int fromRow, int toRow) {
+        var rows = new IntList(64);
+        var cols = new IntList(64);
+        var types = new IntList(64);
+        for (int row = fromRow; row < toRow; row++) // for each pixel excluding the outer edge
+            for (int col = 1; col < image[0].length - 1; col++) {
+                if (!image[row][col]) continue; // if it's part of the fingerprint (i.e. true)
+                var transitions = TRANSITIONS[Thinning.neighbourhood(image, row, col)];
+                if (transitions == BIFURCATION || transitions == ENDING) { // if it's a minutia
+                    rows.add(row);
+                    cols.add(col);
+                    types.add(transitions);
+                }
+            }
+        return new int[][]{rows.toArray(), cols.toArray(), types.toArray()};
+    }
+
+    /**
+     * @return the list of minutiae with the given coordinates, orientations and
+     * types.
+     */
+    private static List<int[]> minutiae(int[] rows, int[] cols, int[] orientations, int[] types) {
+        var minutiaes = new ArrayList<int[]>(rows.length);
+        for (int i = 0; i < rows.length; i++)
+            minutiaes.add(new int[]{rows[i], cols[i], orientations[i], types[i]});
         return minutiaes;
     }
 
@@ -458,18 +750,57 @@ public class Fingerprint {
      */
     public static int [] applyRotation(int [] minutia, int centerRow, int centerCol, int rotation) {
         assert minutia != null;
+        return transform(minutia, centerRow, centerCol, 0, 0, rotation, sin(rotation), cos(rotation));
+    }
+
+    /**
+     * @param rotation the rotation in degrees.
+     * @return the sine of the rotation, read from a table if possible.
+     */
+    static double sin(int rotation) {
+        if (rotation < -TABLE_ROTATION || rotation > TABLE_ROTATION)
+            return Math.sin(Math.toRadians(rotation));
+        return SIN[rotation + TABLE_ROTATION];
+    }
+
+    /**
+     * @param rotation the rotation in degrees.
+     * @return the cosine of the rotation, read from a table if possible.
+     */
+    static double cos(int rotation) {
+        if (rotation < -TABLE_ROTATION || rotation > TABLE_ROTATION)
+            return Math.cos(Math.toRadians(rotation));
+        return COS[rotation + TABLE_ROTATION];
+    }
+
+    /**
+     * Rotates then translates a minutia, see
+     * {@link #applyTransformation(int[], int, int, int, int, int)}.
+     *
+     * @param sinRot the sine of the rotation.
+     * @param cosRot the cosine of the rotation.
+     * @return the transformed minutia.
+     */
+    private static int[] transform(int[] minutia,
+                                   int centerRow,
+                                   int centerCol,
+                                   int rowTranslation,
+                                   int colTranslation,
+                                   int rotation,
+                                   double sinRot,
+                                   double cosRot) {
         // center on new origin
         int x = minutia[1] - centerCol;
         int y = centerRow - minutia[0];
-        // convert to radians, then compute sin/cos
-        double rotationRad = Math.toRadians(rotation);
-        double sinRot = Math.sin(rotationRad);
-        double cosRot = Math.cos(rotationRad);
         // formula
-        int newRow = (int) Math.round(centerRow - (x * sinRot + y * cosRot));
-        int newCol = (int) Math.round(centerCol + (x * cosRot - y * sinRot));
+        int newRow = (int) Math.round(centerRow - (x * sinRot + y * cosRot)) - rowTranslation;
+        int newCol = (int) Math.round(centerCol + (x * cosRot - y * sinRot)) - colTranslation;
         int newOrientation = (minutia[2] + rotation) % 360;
-        return new int[]{newRow, newCol, newOrientation};
+        int[] transformed = minutia.clone(); // keeps the type, if any
+        transformed[0] = newRow;
+        transformed[1] = newCol;
+        transformed[2] = newOrientation;
+        return transformed;
     }
 
     /**
@@ -482,9 +813,10 @@ public class Fingerprint {
      */
     public static int [] applyTranslation(int [] minutia, int rowTranslation, int colTranslation) {
         assert minutia != null;
-        int newRow = minutia[0] - rowTranslation;
-        int newCol = minutia[1] - colTranslation;
-        return new int[]{newRow, newCol, minutia[2]};
+        int[] translated = minutia.clone(); // keeps the orientation and the type, if any
+        translated[0] = minutia[0] - rowTranslation;
+        translated[1] = minutia[1] - colTranslation;
+        return translated;
     }
 
     /**
@@ -506,11 +838,7 @@ public class Fingerprint {
                                                       int colTranslation,
                                                       int rotation) {
         assert minutia != null;
-        return applyTranslation(
-            applyRotation(minutia, centerRow, centerCol, rotation),
-            rowTranslation,
-            colTranslation
-        );
+        return transform(minutia, centerRow, centerCol, rowTranslation, colTranslation, rotation, sin(rotation), cos(rotation));
     }
 
     /**
@@ -532,13 +860,40 @@ public class Fingerprint {
                                                   int colTranslation,
                                                   int rotation) {
         assert minutiae != null;
-        return minutiae.stream()
-            .map(i -> applyTransformation(i, centerRow, centerCol, rowTranslation, colTranslation, rotation))
-            .collect(Collectors.toList());
+        double sinRot = sin(rotation); // the same for all minutiae
+        double cosRot = cos(rotation);
+        var transformed = new ArrayList<int[]>(minutiae.size());
+        for (int[] minutia : minutiae)
+            transformed.add(transform(minutia, centerRow, centerCol, rowTranslation, colTranslation, rotation, sinRot, cosRot));
+        return transformed;
     }
 
     /**
-     * Counts the number of overlapping minutiae.
+     * Computes the row, column, and angle after applying a transformation
+     * (translation and rotation) for each minutia in the given template.
+     *
+     * @param template       the template of the minutiae.
+     * @param centerCol      the column around which the point is rotated.
+     * @param centerRow      the row around which the point is rotated.
+     * @param rowTranslation the vertical translation.
+     * @param colTranslation the horizontal translation.
+     * @param rotation       the rotation.
+     * @return the template of the transformed minutiae.
+     * @see #applyTransformation(List, int, int, int, int, int)
+     */
+    public static MinutiaeTemplate applyTransformation(MinutiaeTemplate template,
+                                                       int centerRow,
+                                                       int centerCol,
+                                                       int rowTranslation,
+                                                       int colTranslation,
+                                                       int rotation) {
+        assert template != null;
+        return template.transform(centerRow, centerCol, rowTranslation, colTranslation, rotation);
+    }
+
+    /**
+     * Counts the number of overlapping minutiae. Minutiae of different types
+     * never overlap, but a minutia without type overlaps minutiae of any type.
      *
      * @param minutiae1      the first set of minutiae.
      * @param minutiae2      the second set of minutiae.
@@ -554,19 +909,37 @@ public class Fingerprint {
                                             int maxOrientation) {
         assert minutiae1 != null;
         assert minutiae2 != null;
-        return (int) minutiae1.stream() // for each minutia in minutiae1
-            .filter(minutia1 -> minutiae2.stream()
-                .anyMatch(minutia2 -> { // keep it if there is any in minutiae2 that is true below
-                    var a = minutia1[0] - minutia2[0];
-                    var b = minutia1[1] - minutia2[1];
-                    return Math.sqrt(a * a + b * b) <= maxDistance // Pythagoras
-                        && Math.abs(minutia1[2] - minutia2[2]) <= maxOrientation;
-                })
-            ).count();
+        return matchingMinutiaeCount(
+            MinutiaeTemplate.of(minutiae1),
+            MinutiaeTemplate.of(minutiae2),
+            maxDistance,
+            maxOrientation);
+    }
+
+    /**
+     * Counts the number of overlapping minutiae of two templates.
+     *
+     * @param template1      the template of the first set of minutiae.
+     * @param template2      the template of the second set of minutiae.
+     * @param maxDistance    the maximum distance between two minutiae to consider
+     *                       them as overlapping.
+     * @param maxOrientation the maximum difference of orientation between two
+     *                       minutiae to consider them as overlapping.
+     * @return the number of overlapping minutiae.
+     * @see #matchingMinutiaeCount(List, List, int, int)
+     */
+    public static int matchingMinutiaeCount(MinutiaeTemplate template1,
+                                            MinutiaeTemplate template2,
+                                            int maxDistance,
+                                            int maxOrientation) {
+        assert template1 != null;
+        assert template2 != null;
+        return template1.matchingCount(template2, maxDistance, maxOrientation);
     }
 
     /**
-     * Compares the minutiae from two fingerprints.
+     * Compares the minutiae from two fingerprints. The fingerprints are only
+     * aligned on pairs of minutiae of the same type.
      *
      * @param minutiae1 the list of minutiae of the first fingerprint.
      * @param minutiae2 the list of minutiae of the second fingerprint.
@@ -576,27 +949,181 @@ public class Fingerprint {
     public static boolean match(List<int[]> minutiae1, List<int[]> minutiae2) {
         assert minutiae1 != null;
         assert minutiae2 != null;
-        return minutiae1.stream()
-            .anyMatch(min1 -> minutiae2.stream().parallel() // is there any in minutia2 where
-                .anyMatch(min2 -> IntStream // in the angle_offset range
-                    .rangeClosed(
-                        (min2[2] - min1[2]) - MATCH_ANGLE_OFFSET,
-                        (min2[2] - min1[2]) + MATCH_ANGLE_OFFSET
-                    ).parallel()
-                    .anyMatch(rotation -> // is any transformation similar by >= threshold amount
-                        FOUND_THRESHOLD <=
-                            matchingMinutiaeCount(
-                                minutiae1,
-                                applyTransformation(
-                                    minutiae2,
-                                    min1[0],
-                                    min1[1],
-                                    min2[0] - min1[0],
-                                    min2[1] - min1[1],
-                                    rotation
-                                ),
-                                DISTANCE_THRESHOLD,
-                                ORIENTATION_THRESHOLD
-                            ))));
+        return match(MinutiaeTemplate.of(minutiae1), MinutiaeTemplate.of(minutiae2));
+    }
+
+    /**
+     * Compares the templates of two fingerprints, on the calling thread.
+     *
+     * @param template1 the template of the first fingerprint.
+     * @param template2 the template of the second fingerprint.
+     * @return Returns <code>true</code> if they match and <code>false</code>
+     * otherwise.
+     * @see #match(List, List)
+     * @see #match(MinutiaeTemplate, MinutiaeTemplate, ForkJoinPool)
+     * @see #score(MinutiaeTemplate, MinutiaeTemplate)
+     */
+    public static boolean match(MinutiaeTemplate template1, MinutiaeTemplate template2) {
+        assert template1 != null;
+        assert template2 != null;
+        return score(template1, template2, FOUND_THRESHOLD, FOUND_THRESHOLD).matches(FOUND_THRESHOLD);
+    }
+
+    /**
+     * Compares the templates of two fingerprints, trying all the alignments
+     * of {@link #match(MinutiaeTemplate, MinutiaeTemplate)} to find the one
+     * where the most minutiae overlap.
+     *
+     * @param template1 the template of the first fingerprint.
+     * @param template2 the template of the second fingerprint.
+     * @return the score of the best alignment, which matches if
+     * {@link MatchScore#matches(int)} with {@link #FOUND_THRESHOLD}.
+     */
+    public static MatchScore score(MinutiaeTemplate template1, MinutiaeTemplate template2) {
+        assert template1 != null;
+        assert template2 != null;
+        return score(template1, template2, 1, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Searches the alignment of two templates where the most minutiae
+     * overlap, ignoring the alignments below a count and stopping at another
+     * count. Each alignment is only counted until it can't beat the best one
+     * anymore.
+     *
+     * @param template1 the template of the first fingerprint.
+     * @param template2 the template of the second fingerprint.
+     * @param minCount  the count below which the alignments are ignored.
+     * @param stopCount the count from which the search stops.
+     * @return the score of the first alignment with at least
+     * <code>stopCount</code> overlapping minutiae, else of the best alignment,
+     * with a count of <code>0</code> and no transformation if none has at least
+     * <code>minCount</code>.
+     */
+    static MatchScore score(MinutiaeTemplate template1, MinutiaeTemplate template2, int minCount, int stopCount) {
+        int bestCount = 0;
+        int bestI = 0;
+        int bestJ = 0;
+        int bestRotation = 0;
+        boolean found = false;
+        search:
+        for (int i = 0; i < template1.size(); i++)
+            for (int j = 0; j < template2.size(); j++) {
+                if (!MinutiaeTemplate.canAnchor(template1, i, template2, j))
+                    continue; // only minutiae of the same type, with similar neighbours if known, can be aligned
+                int angleDifference = template2.angle(j) - template1.angle(i);
+                for (int rotation = angleDifference - MATCH_ANGLE_OFFSET; rotation <= angleDifference + MATCH_ANGLE_OFFSET; rotation++) {
+                    int threshold = Math.max(minCount, bestCount + 1);
+                    if (!aligns(template1, i, template2, j, rotation, threshold)) continue;
+                    bestCount = alignedCount(template1, i, template2, j, rotation);
+                    bestI = i;
+                    bestJ = j;
+                    bestRotation = rotation;
+                    found = true;
+                    if (bestCount >= stopCount) break search;
+                }
+            }
+        if (!found) return new MatchScore(0, template1.size(), template2.size(), 0, 0, 0, 0, 0);
+        return new MatchScore(
+            bestCount,
+            template1.size(),
+            template2.size(),
+            template1.row(bestI),
+            template1.col(bestI),
+            template2.row(bestJ) - template1.row(bestI),
+            template2.col(bestJ) - template1.col(bestI),
+            bestRotation);
+    }
+
+    /**
+     * Compares the templates of two fingerprints, searching the alignments in
+     * parallel on the given pool.
+     *
+     * @param template1 the template of the first fingerprint.
+     * @param template2 the template of the second fingerprint.
+     * @param pool      the pool running the search.
+     * @return Returns <code>true</code> if they match and <code>false</code>
+     * otherwise.
+     * @see AlignmentSearch
+     */
+    public static boolean match(MinutiaeTemplate template1, MinutiaeTemplate template2, ForkJoinPool pool) {
+        assert template1 != null;
+        assert template2 != null;
+        assert pool != null;
+        return AlignmentSearch.match(template1, template2, pool);
+    }
+
+    /**
+     * Compares the templates of two fingerprints with the given engine.
+     *
+     * @param template1 the template of the first fingerprint.
+     * @param template2 the template of the second fingerprint.
+     * @param engine    the way of comparing them.
+     * @return Returns <code>true</code> if they match and <code>false</code>
+     * otherwise.
+     */
+    public static boolean match(MinutiaeTemplate template1, MinutiaeTemplate template2, MatchEngine engine) {
+        assert template1 != null;
+        assert template2 != null;
+        assert engine != null;
+        switch (engine) {
+            case HOUGH:
+                return HoughMatcher.match(template1, template2);
+            case EXHAUSTIVE:
+            default:
+                return match(template1, template2);
+        }
+    }
+
+    /**
+     * Checks if two templates match once aligned on a pair of minutiae.
+     *
+     * @param template1 the template of the first fingerprint.
+     * @param i         the index of the minutia of <code>template1</code>.
+     * @param template2 the template of the second fingerprint.
+     * @param j         the index of the minutia of <code>template2</code>.
+     * @param rotation  the rotation of <code>template2</code>, in degrees.
+     * @return <code>true</code> if at least {@link #FOUND_THRESHOLD} minutiae
+     * overlap once the minutia <code>j</code> of <code>template2</code> is moved
+     * onto the minutia <code>i</code> of <code>template1</code> and rotated.
+     */
+    static boolean aligns(MinutiaeTemplate template1, int i, MinutiaeTemplate template2, int j, int rotation) {
+        return aligns(template1, i, template2, j, rotation, FOUND_THRESHOLD);
+    }
+
+    /**
+     * Checks if at least <code>threshold</code> minutiae overlap once two
+     * templates are aligned on a pair of minutiae, see
+     * {@link #aligns(MinutiaeTemplate, int, MinutiaeTemplate, int, int)}.
+     */
+    static boolean aligns(MinutiaeTemplate template1, int i, MinutiaeTemplate template2, int j, int rotation,
+                          int threshold) {
+        return template1.matchingCountAtLeast(
+            template2,
+            template1.row(i),
+            template1.col(i),
+            template2.row(j) - template1.row(i),
+            template2.col(j) - template1.col(i),
+            rotation,
+            DISTANCE_THRESHOLD,
+            ORIENTATION_THRESHOLD,
+            threshold);
+    }
+
+    /**
+     * @return the number of minutiae that overlap once two templates are
+     * aligned on a pair of minutiae, see
+     * {@link #aligns(MinutiaeTemplate, int, MinutiaeTemplate, int, int)}.
+     */
+    private static int alignedCount(MinutiaeTemplate template1, int i, MinutiaeTemplate template2, int j, int rotation) {
+        return template1.matchingCount(
+            template2,
+            template1.row(i),
+            template1.col(i),
+            template2.row(j) - template1.row(i),
+            template2.col(j) - template1.col(i),
+            rotation,
+            DISTANCE_THRESHOLD,
+            ORIENTATION_THRESHOLD);
     }
 }
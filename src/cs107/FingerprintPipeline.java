@@ -0,0 +1,120 @@
+package cs107;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Extracts the minutiae of a fingerprint image in one call.
+ * <p>
+ * The image is binarized straight from its raster, thinned in place and the
+ * minutiae are extracted from the result, so only two binary images are alive
+ * at any time. Both are buffers of the calling thread, reused from one call to
+ * the next, unless an intermediate image is requested.
+ */
+public final class FingerprintPipeline {
+
+    /**
+     * The intermediate images that can be returned with the minutiae.
+     */
+    public enum Artifact {
+        /**
+         * The image after binarization, see {@link Helper#readBinary(String)}.
+         */
+        BINARY,
+        /**
+         * The image after thinning, see {@link Fingerprint#thin(boolean[][])}.
+         */
+        SKELETON
+    }
+
+    /**
+     * The minutiae of an image, and the requested intermediate images.
+     */
+    public static final class Result {
+
+        private final List<int[]> minutiae;
+        private final boolean[][] binary;
+        private final boolean[][] skeleton;
+
+        private Result(List<int[]> minutiae, boolean[][] binary, boolean[][] skeleton) {
+            this.minutiae = minutiae;
+            this.binary = binary;
+            this.skeleton = skeleton;
+        }
+
+        /**
+         * @return the minutiae, as returned by
+         * {@link Fingerprint#extract(boolean[][])}.
+         */
+        public List<int[]> minutiae() {
+            return minutiae;
+        }
+
+        /**
+         * @return the binary image, or <code>null</code> if
+         * {@link Artifact#BINARY} was not requested.
+         */
+        public boolean[][] binary() {
+            return binary;
+        }
+
+        /**
+         * @return the skeleton, or <code>null</code> if
+         * {@link Artifact#SKELETON} was not requested.
+         */
+        public boolean[][] skeleton() {
+            return skeleton;
+        }
+    }
+
+    /**
+     * Per-thread image buffer, reused when the skeleton is not returned.
+     */
+    private static final ThreadLocal<boolean[][]> IMAGE = new ThreadLocal<>();
+
+    private FingerprintPipeline() {
+    }
+
+    /**
+     * Extracts the minutiae of an image, without intermediate images.
+     *
+     * @param path the path of the image.
+     * @return the result, or <code>null</code> if the image can't be read.
+     * @see #process(String, Set)
+     */
+    public static Result process(String path) {
+        return process(path, EnumSet.noneOf(Artifact.class));
+    }
+
+    /**
+     * Extracts the minutiae of an image. The result is the same as calling
+     * {@link Helper#readBinary(String)}, {@link Fingerprint#thin(boolean[][])}
+     * and {@link Fingerprint#extract(boolean[][])} one after the other.
+     *
+     * @param path      the path of the image.
+     * @param artifacts the intermediate images to return.
+     * @return the result, or <code>null</code> if the image can't be read.
+     */
+    public static Result process(String path, Set<Artifact> artifacts) {
+        assert path != null && artifacts != null;
+        boolean keepSkeleton = artifacts.contains(Artifact.SKELETON);
+        // the skeleton is thinned in place, so it can't be the pooled buffer if it is returned
+        boolean[][] image = Helper.readBinary(path, keepSkeleton ? null : IMAGE.get());
+        if (image == null)
+            return null;
+        if (!keepSkeleton)
+            IMAGE.set(image);
+
+        boolean[][] binary = null;
+        if (artifacts.contains(Artifact.BINARY)) {
+            binary = new boolean[image.length][];
+            for (int row = 0; row < image.length; row++)
+                binary[row] = image[row].clone();
+        }
+
+        Thinning.thinInPlace(image, Thinning.scratch(image.length, image[0].length));
+        List<int[]> minutiae = Fingerprint.extract(image);
+        return new Result(minutiae, binary, keepSkeleton ? image : null);
+    }
+}
@@ -4,6 +4,14 @@ import java.awt.Graphics;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
 import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.MultiPixelPackedSampleModel;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
 import java.io.File;
 import java.io.IOException;
 import java.util.List;
@@ -43,6 +51,63 @@ public final class Helper {
      */
     private final static double LUMA_COEFFICIENT_BLUE = 0.114;
 
+    /**
+     * The luma coefficients in thousandths, a pixel is dark if the weighted sum
+     * of its components is below {@link #LUMA_THRESHOLD}.
+     */
+    private final static int LUMA_WEIGHT_RED = 299;
+    private final static int LUMA_WEIGHT_GREEN = 587;
+    private final static int LUMA_WEIGHT_BLUE = 114;
+
+    /**
+     * The luminance <code>127.5</code> in thousandths. The rounded luminance is
+     * below <code>128</code> if the weighted sum is below this threshold and not
+     * if it is above. When it is equal, the rounding depends on the errors of the
+     * floating point computation, so {@link #pixelLuminance} decides.
+     */
+    private final static int LUMA_THRESHOLD = 127_500;
+
+    /**
+     * The ways of binarizing a row of pixels.
+     */
+    public enum Binarization {
+        /**
+         * Each pixel is tested on its own.
+         */
+        SCALAR,
+        /**
+         * The row is binarized by a branch-free loop that the JIT compiles to SIMD
+         * instructions, and rechecked pixel by pixel in the rare case where one of
+         * them is exactly on the threshold.
+         */
+        BRANCH_FREE
+    }
+
+    /**
+     * The binarization used by {@link #toBinary} and the <code>readBinary</code>
+     * methods, {@link Binarization#BRANCH_FREE} unless the system property
+     * <code>cs107.binarization</code> names another one.
+     */
+    public static Binarization BINARIZATION = binarizationProperty();
+
+    /**
+     * Reads the binarization named by the system property
+     * <code>cs107.binarization</code>.
+     *
+     * @return the named binarization, or {@link Binarization#BRANCH_FREE} if
+     * the property is not set or names no binarization.
+     */
+    private static Binarization binarizationProperty() {
+        final String name = System.getProperty("cs107.binarization", Binarization.BRANCH_FREE.name());
+        try {
+            return Binarization.valueOf(name);
+        } catch (IllegalArgumentException e) {
+            // an unknown name must not make the whole class unusable
+            System.out.println("Unknown binarization: " + name + ", using " + Binarization.BRANCH_FREE);
+            return Binarization.BRANCH_FREE;
+        }
+    }
+
     /**
      * Reads specified image from the resource folder as ARGB.
      *
@@ -51,14 +116,8 @@ public final class Helper {
      * @return HxW array of packed RGB colors, or <code>null</code> on failure
      */
     public static int[][] readARGB(final String name) {
-        try {
-            // final BufferedImage image = ImageIO.read(Helper.class.getResource(name));
-            final BufferedImage image = ImageIO.read(new File(name));
-            return fromBufferedImage(image);
-        } catch (final IOException e) {
-            System.out.println(e + " Filename: " + name);
-            return null;
-        }
+        final BufferedImage image = readImage(name);
+        return image == null ? null : fromBufferedImage(image);
     }
 
     /**
@@ -70,8 +129,74 @@ public final class Helper {
      * @see #toBinary
      */
     public static boolean[][] readBinary(final String name) {
-        final int[][] image = readARGB(name);
-        return image == null ? null : toBinary(image);
+        return readBinary(name, null);
+    }
+
+    /**
+     * Reads specified image from the resource folder as binary, into the given
+     * array if it has the dimensions of the image.
+     *
+     * @param name   Name of the image to read, or path relative to the resource
+     *               folder.
+     * @param buffer array to overwrite, or <code>null</code>.
+     * @return <code>buffer</code> or a new array containing the binary image, or
+     * <code>null</code> on failure
+     */
+    static boolean[][] readBinary(final String name, final boolean[][] buffer) {
+        final BufferedImage image = readImage(name);
+        if (image == null)
+            return null;
+        final BinaryDecoder decoder = new BinaryDecoder(image);
+        final boolean[][] result = buffer != null
+            && buffer.length == image.getHeight()
+            && buffer[0].length == image.getWidth()
+            ? buffer
+            : new boolean[image.getHeight()][image.getWidth()];
+        for (int row = 0; row < result.length; ++row) {
+            decoder.decodeRow(row, result[row]);
+        }
+        return result;
+    }
+
+    /**
+     * Reads specified image from the resource folder as a packed binary image.
+     *
+     * @param name Name of the image to read, or path relative to the resource
+     *             folder.
+     * @return the packed binary image, or <code>null</code> on failure
+     * @see #readBinary(String)
+     */
+    public static BinaryImage readBinaryImage(final String name) {
+        final BufferedImage image = readImage(name);
+        if (image == null)
+            return null;
+        final BinaryDecoder decoder = new BinaryDecoder(image);
+        final BinaryImage result = new BinaryImage(image.getHeight(), image.getWidth());
+        final boolean[] buffer = new boolean[image.getWidth()];
+        for (int row = 0; row < result.height(); ++row) {
+            decoder.decodeRow(row, buffer);
+            result.setRow(row, buffer);
+        }
+        return result;
+    }
+
+    /**
+     * Reads specified image from the resource folder.
+     *
+     * @param name Name of the image to read, or path relative to the resource
+     *             folder.
+     * @return the image, or <code>null</code> on failure
+     */
+    private static BufferedImage readImage(final String name) {
+        try {
+            final BufferedImage image = ImageIO.read(new File(name));
+            if (image == null)
+                System.out.println("Unsupported image format. Filename: " + name);
+            return image;
+        } catch (final IOException e) {
+            System.out.println(e + " Filename: " + name);
+            return null;
+        }
     }
 
     /**
@@ -126,8 +251,9 @@ public final class Helper {
         final int height = image.getHeight();
         final int[][] array = new int[height][width];
         for (int row = 0; row < height; ++row) {
+            image.getRGB(0, row, width, 1, array[row], 0, width);
             for (int col = 0; col < width; ++col) {
-                array[row][col] = image.getRGB(col, row) & 0xffffff;
+                array[row][col] &= 0xffffff;
             }
         }
         return array;
@@ -228,6 +354,54 @@ public final class Helper {
         return (int) Math.round(LUMA_COEFFICIENT_RED * red + LUMA_COEFFICIENT_GREEN * green + LUMA_COEFFICIENT_BLUE * blue);
     }
 
+    /**
+     * Returns whether a pixel is dark, that is whether its luminance as computed
+     * by {@link #pixelLuminance} is strictly below <code>128</code>, using
+     * integer arithmetic.
+     *
+     * @param pixel the pixel's ARGB value as an int.
+     * @return <code>true</code> if the pixel is dark.
+     */
+    private static boolean isDark(final int pixel) {
+        final int sum = LUMA_WEIGHT_RED * ((pixel >> 16) & 0xFF)
+            + LUMA_WEIGHT_GREEN * ((pixel >> 8) & 0xFF)
+            + LUMA_WEIGHT_BLUE * (pixel & 0xFF);
+        return sum < LUMA_THRESHOLD || (sum == LUMA_THRESHOLD && pixelLuminance(pixel) < 128);
+    }
+
+    /**
+     * Binarizes consecutive pixels with {@link #BINARIZATION}.
+     *
+     * @param pixels each pixel's ARGB value as an int.
+     * @param from   the index of the first pixel in <code>pixels</code>.
+     * @param result receives whether each pixel is dark, from index
+     *               <code>0</code>.
+     * @param count  the number of pixels.
+     */
+    private static void binarize(final int[] pixels, final int from, final boolean[] result, final int count) {
+        if (BINARIZATION == Binarization.SCALAR) {
+            for (int i = 0; i < count; ++i) {
+                result[i] = isDark(pixels[from + i]);
+            }
+            return;
+        }
+        int ties = 0;
+        for (int i = 0; i < count; ++i) {
+            final int pixel = pixels[from + i];
+            final int difference = LUMA_WEIGHT_RED * ((pixel >> 16) & 0xFF)
+                + LUMA_WEIGHT_GREEN * ((pixel >> 8) & 0xFF)
+                + LUMA_WEIGHT_BLUE * (pixel & 0xFF)
+                - LUMA_THRESHOLD;
+            result[i] = (difference >>> 31) != 0;
+            ties |= ~(difference | -difference); // the sign bit is set only if difference is 0
+        }
+        if (ties < 0) {
+            for (int i = 0; i < count; ++i) {
+                result[i] = isDark(pixels[from + i]);
+            }
+        }
+    }
+
     /**
      * Converts an ARGB image to binary by:
      * <ul>
@@ -237,6 +411,8 @@ public final class Helper {
      * set to <code>1</code>, that is, <code>true</code>, otherwise it will be set
      * to <code>false</code></li>
      * </ul>
+     * The luminance is compared with integer arithmetic, see
+     * {@link #BINARIZATION}.
      *
      * @param image array containing each pixel's ARGB value as an int.
      * @return Array containing each pixel's as a boolean value. Dark pixels are
@@ -246,9 +422,7 @@ public final class Helper {
     public static boolean[][] toBinary(final int[][] image) {
         final boolean[][] result = new boolean[image.length][image[0].length];
         for (int i = 0; i < result.length; i++) {
-            for (int j = 0; j < result[i].length; j++) {
-                result[i][j] = pixelLuminance(image[i][j]) < 128;
-            }
+            binarize(image[i], 0, result[i], result[i].length);
         }
         return result;
     }
@@ -360,4 +534,171 @@ public final class Helper {
             addLine(image, minutiae[0], minutiae[1], Math.toRadians(minutiae[2]), 8, 0xFFFF0000);
         }
     }
+
+    /**
+     * Binarizes the rows of an image straight from its raster, giving the same
+     * result as {@link #toBinary} on {@link #readARGB}.
+     * <p>
+     * The common layouts (1, 2 or 4 bit packed, 8-bit grey or indexed, 3 or 4
+     * bytes per pixel, and one int per pixel) are read from the data buffer
+     * without colour conversion. Every other layout is converted row by row by
+     * {@link BufferedImage#getRGB(int, int, int, int, int[], int, int)}.
+     */
+    private static final class BinaryDecoder {
+
+        private final BufferedImage image;
+        private final int width;
+        private final int translateX;
+        private final int translateY;
+        private final DataBuffer buffer;
+        private final int layout;
+
+        // for packed and 8-bit layouts, whether each sample value is dark
+        private boolean[] dark;
+        // for the byte layouts, the offset of each band within a pixel
+        private int[] bandOffsets;
+        private int pixelStride;
+        private int scanlineStride;
+        private int bitsPerPixel;
+        private int[] rgbRow;
+
+        private static final int GENERIC = 0;
+        private static final int PACKED = 1;
+        private static final int BYTE = 2;
+        private static final int BYTE_RGB = 3;
+        private static final int INT_RGB = 4;
+
+        BinaryDecoder(final BufferedImage image) {
+            this.image = image;
+            this.width = image.getWidth();
+            final Raster raster = image.getRaster();
+            this.translateX = raster.getSampleModelTranslateX();
+            this.translateY = raster.getSampleModelTranslateY();
+            this.buffer = raster.getDataBuffer();
+            this.layout = layoutOf(image);
+            final ColorModel colorModel = image.getColorModel();
+            switch (layout) {
+                case PACKED: {
+                    final MultiPixelPackedSampleModel model = (MultiPixelPackedSampleModel) raster.getSampleModel();
+                    bitsPerPixel = model.getPixelBitStride();
+                    scanlineStride = model.getScanlineStride();
+                    dark = darkSamples(colorModel, 1 << bitsPerPixel);
+                    break;
+                }
+                case BYTE: {
+                    final ComponentSampleModel model = (ComponentSampleModel) raster.getSampleModel();
+                    pixelStride = model.getPixelStride();
+                    scanlineStride = model.getScanlineStride();
+                    bandOffsets = model.getBandOffsets();
+                    dark = darkSamples(colorModel, 256);
+                    break;
+                }
+                case BYTE_RGB: {
+                    final ComponentSampleModel model = (ComponentSampleModel) raster.getSampleModel();
+                    pixelStride = model.getPixelStride();
+                    scanlineStride = model.getScanlineStride();
+                    bandOffsets = model.getBandOffsets();
+                    rgbRow = new int[width];
+                    break;
+                }
+                case INT_RGB: {
+                    scanlineStride = ((SinglePixelPackedSampleModel) raster.getSampleModel()).getScanlineStride();
+                    break;
+                }
+                default:
+                    rgbRow = new int[width];
+            }
+        }
+
+        /**
+         * @return the layout to use for the given image.
+         */
+        private static int layoutOf(final BufferedImage image) {
+            final Raster raster = image.getRaster();
+            final boolean bytes = raster.getDataBuffer() instanceof DataBufferByte
+                && raster.getDataBuffer().getNumBanks() == 1;
+            switch (image.getType()) {
+                case BufferedImage.TYPE_BYTE_BINARY:
+                    return bytes && raster.getSampleModel() instanceof MultiPixelPackedSampleModel ? PACKED : GENERIC;
+                case BufferedImage.TYPE_BYTE_GRAY:
+                case BufferedImage.TYPE_BYTE_INDEXED:
+                    return bytes && raster.getSampleModel() instanceof ComponentSampleModel ? BYTE : GENERIC;
+                case BufferedImage.TYPE_3BYTE_BGR:
+                case BufferedImage.TYPE_4BYTE_ABGR:
+                    return bytes && raster.getSampleModel() instanceof ComponentSampleModel ? BYTE_RGB : GENERIC;
+                case BufferedImage.TYPE_INT_RGB:
+                case BufferedImage.TYPE_INT_ARGB:
+                    return raster.getDataBuffer() instanceof DataBufferInt
+                        && raster.getSampleModel() instanceof SinglePixelPackedSampleModel ? INT_RGB : GENERIC;
+                default:
+                    return GENERIC;
+            }
+        }
+
+        /**
+         * @return for each sample value, whether the colour model maps it to a
+         * dark pixel.
+         */
+        private static boolean[] darkSamples(final ColorModel colorModel, final int count) {
+            final boolean[] dark = new boolean[count];
+            for (int sample = 0; sample < count; ++sample) {
+                dark[sample] = isDark(colorModel.getRGB(sample));
+            }
+            return dark;
+        }
+
+        /**
+         * Binarizes a row of the image.
+         *
+         * @param row    the row to decode.
+         * @param result receives whether each pixel of the row is dark.
+         */
+        void decodeRow(final int row, final boolean[] result) {
+            final int y = row - translateY;
+            switch (layout) {
+                case PACKED: {
+                    final byte[] data = ((DataBufferByte) buffer).getData();
+                    final int mask = (1 << bitsPerPixel) - 1;
+                    final int rowStart = buffer.getOffset() + y * scanlineStride;
+                    for (int col = 0; col < width; ++col) {
+                        final int bit = (col - translateX) * bitsPerPixel;
+                        final int shift = 8 - bitsPerPixel - (bit & 7);
+                        result[col] = dark[(data[rowStart + (bit >> 3)] >> shift) & mask];
+                    }
+                    break;
+                }
+                case BYTE: {
+                    final byte[] data = ((DataBufferByte) buffer).getData();
+                    int index = buffer.getOffset() + y * scanlineStride - translateX * pixelStride + bandOffsets[0];
+                    for (int col = 0; col < width; ++col, index += pixelStride) {
+                        result[col] = dark[data[index] & 0xFF];
+                    }
+                    break;
+                }
+                case BYTE_RGB: {
+                    final byte[] data = ((DataBufferByte) buffer).getData();
+                    final int red = bandOffsets[0];
+                    final int green = bandOffsets[1];
+                    final int blue = bandOffsets[2];
+                    int index = buffer.getOffset() + y * scanlineStride - translateX * pixelStride;
+                    for (int col = 0; col < width; ++col, index += pixelStride) {
+                        rgbRow[col] = (data[index + red] & 0xFF) << 16
+                            | (data[index + green] & 0xFF) << 8
+                            | (data[index + blue] & 0xFF);
+                    }
+                    binarize(rgbRow, 0, result, width);
+                    break;
+                }
+                case INT_RGB: {
+                    final int[] data = ((DataBufferInt) buffer).getData();
+                    binarize(data, buffer.getOffset() + y * scanlineStride - translateX, result, width);
+                    break;
+                }
+                default: {
+                    image.getRGB(0, row, width, 1, rgbRow, 0, width);
+                    binarize(rgbRow, 0, result, width);
+                }
+            }
+        }
+    }
 }
@@ -0,0 +1,191 @@
+package cs107;
+
+import java.util.Arrays;
+
+/**
+ * Compares two templates by voting for their alignment, instead of trying the
+ * alignment of every pair of minutiae.
+ * <p>
+ * Each pair of minutiae of the same type votes for the rotation that gives
+ * them the same angle, and for the translation that then moves the minutia of
+ * the second template onto the minutia of the first one. The votes are
+ * quantised in bins and packed in <code>long</code> keys, so the accumulator
+ * is a single array that is sorted to group equal votes. Only the alignments
+ * of the bins with the most votes are checked, with
+ * {@link MinutiaeTemplate#matchingCountAtLeast(MinutiaeTemplate, int, int, int, int, int, int, int, int)}.
+ * <p>
+ * The rotation is chosen so that the orientations match: it is the opposite of
+ * the rotations tried by
+ * {@link Fingerprint#match(MinutiaeTemplate, MinutiaeTemplate)}, which are
+ * centred on <code>angle2 - angle1</code>.
+ *
+ * @see Fingerprint.MatchEngine#HOUGH
+ */
+final class HoughMatcher {
+
+    /**
+     * The width of the bins of rotation, in degrees.
+     */
+    static final int ANGLE_BIN = 6;
+
+    /**
+     * The width of the bins of translation, in pixels.
+     */
+    static final int TRANSLATION_BIN = 8;
+
+    /**
+     * The number of bins whose alignment is checked.
+     */
+    static final int PEAKS = 8;
+
+    // the key of a vote packs the bins of rotation, row translation and column translation on 10 bits each
+    private static final int BITS = 10;
+    private static final int TRANSLATION_OFFSET = 1 << (BITS - 1);
+
+    private HoughMatcher() {
+    }
+
+    /**
+     * Compares the templates of two fingerprints.
+     *
+     * @param template1 the template of the first fingerprint.
+     * @param template2 the template of the second fingerprint.
+     * @return <code>true</code> if one of the most voted alignments makes at
+     * least {@link Fingerprint#FOUND_THRESHOLD} minutiae overlap.
+     */
+    static boolean match(MinutiaeTemplate template1, MinutiaeTemplate template2) {
+        final int size1 = template1.size();
+        final int size2 = template2.size();
+        if (size1 == 0 || size2 == 0) return false;
+        // rotating around the centre of the first template keeps the translations small
+        int centerRow = 0;
+        int centerCol = 0;
+        for (int i = 0; i < size1; i++) {
+            centerRow += template1.row(i);
+            centerCol += template1.col(i);
+        }
+        centerRow /= size1;
+        centerCol /= size1;
+
+        // each vote is its key in the high bits and the index of its pair in the low bits
+        long[] votes = new long[size1 * size2];
+        int voteCount = 0;
+        for (int i = 0; i < size1; i++)
+            for (int j = 0; j < size2; j++) {
+                if (!MinutiaeTemplate.compatibleTypes(template1, i, template2, j)) continue;
+                int angleBin = angleBin(template1.angle(i) - template2.angle(j));
+                int rotation = rotation(angleBin);
+                int rowBin = translationBin(rowTranslation(template1, i, template2, j, centerRow, centerCol, rotation));
+                int colBin = translationBin(colTranslation(template1, i, template2, j, centerRow, centerCol, rotation));
+                long key = ((long) angleBin << (2 * BITS)) | ((long) rowBin << BITS) | colBin;
+                votes[voteCount++] = (key << 32) | (i * size2 + j);
+            }
+        Arrays.sort(votes, 0, voteCount);
+
+        // the first vote and the number of votes of the most voted keys, by decreasing number of votes
+        int[] peakStarts = new int[PEAKS];
+        int[] peakVotes = new int[PEAKS];
+        for (int start = 0, end; start < voteCount; start = end) {
+            end = start + 1;
+            while (end < voteCount && votes[end] >>> 32 == votes[start] >>> 32) end++;
+            int count = end - start;
+            if (count <= peakVotes[PEAKS - 1]) continue;
+            int peak = PEAKS - 1;
+            for (; peak > 0 && peakVotes[peak - 1] < count; peak--) {
+                peakVotes[peak] = peakVotes[peak - 1];
+                peakStarts[peak] = peakStarts[peak - 1];
+            }
+            peakVotes[peak] = count;
+            peakStarts[peak] = start;
+        }
+
+        for (int peak = 0; peak < PEAKS && peakVotes[peak] > 0; peak++) {
+            int start = peakStarts[peak];
+            int end = start + peakVotes[peak];
+            // the mean rotation of the votes of the bin, relative to its middle so that it doesn't wrap around
+            int middle = rotation((int) (votes[start] >>> (32 + 2 * BITS)));
+            int rotationSum = 0;
+            for (int vote = start; vote < end; vote++) {
+                int pair = (int) votes[vote];
+                int difference = template1.angle(pair / size2) - template2.angle(pair % size2) - middle;
+                rotationSum += Math.floorMod(difference + 180, 360) - 180;
+            }
+            // between 0 and 360, so that (angle + rotation) % 360 stays a positive orientation, like the angles
+            // of template1, instead of pushing the angles just above 0 below it
+            int rotation = Math.floorMod(middle + Math.round((float) rotationSum / peakVotes[peak]), 360);
+            // then the mean translation of the votes with this rotation
+            double rowTranslation = 0;
+            double colTranslation = 0;
+            for (int vote = start; vote < end; vote++) {
+                int pair = (int) votes[vote];
+                int i = pair / size2;
+                int j = pair % size2;
+                rowTranslation += rowTranslation(template1, i, template2, j, centerRow, centerCol, rotation);
+                colTranslation += colTranslation(template1, i, template2, j, centerRow, centerCol, rotation);
+            }
+            if (template1.matchingCountAtLeast(
+                template2,
+                centerRow,
+                centerCol,
+                (int) Math.round(rowTranslation / peakVotes[peak]),
+                (int) Math.round(colTranslation / peakVotes[peak]),
+                rotation,
+                Fingerprint.DISTANCE_THRESHOLD,
+                Fingerprint.ORIENTATION_THRESHOLD,
+                Fingerprint.FOUND_THRESHOLD
+            )) return true;
+        }
+        return false;
+    }
+
+    /**
+     * @param rotation a rotation in degrees.
+     * @return the bin of the rotation, from <code>0</code> for
+     * <code>-180</code>.
+     */
+    private static int angleBin(int rotation) {
+        return Math.floorMod(rotation + 180, 360) / ANGLE_BIN;
+    }
+
+    /**
+     * @param angleBin the bin of a rotation.
+     * @return the rotation in the middle of the bin, in degrees.
+     */
+    private static int rotation(int angleBin) {
+        return angleBin * ANGLE_BIN - 180 + ANGLE_BIN / 2;
+    }
+
+    /**
+     * @param translation a translation in pixels.
+     * @return the bin of the translation, clamped to the bins of the key.
+     */
+    private static int translationBin(double translation) {
+        int bin = (int) Math.floor(translation / TRANSLATION_BIN) + TRANSLATION_OFFSET;
+        return Math.max(0, Math.min((1 << BITS) - 1, bin));
+    }
+
+    /**
+     * @return the translation along the rows that moves the minutia
+     * <code>j</code> of <code>template2</code>, rotated around the centre, onto
+     * the minutia <code>i</code> of <code>template1</code>.
+     */
+    private static double rowTranslation(MinutiaeTemplate template1, int i, MinutiaeTemplate template2, int j,
+                                         int centerRow, int centerCol, int rotation) {
+        // same formula as Fingerprint#applyRotation, without rounding
+        int x = template2.col(j) - centerCol;
+        int y = centerRow - template2.row(j);
+        return centerRow - (x * Fingerprint.sin(rotation) + y * Fingerprint.cos(rotation)) - template1.row(i);
+    }
+
+    /**
+     * @return the translation along the columns that moves the minutia
+     * <code>j</code> of <code>template2</code>, rotated around the centre, onto
+     * the minutia <code>i</code> of <code>template1</code>.
+     */
+    private static double colTranslation(MinutiaeTemplate template1, int i, MinutiaeTemplate template2, int j,
+                                         int centerRow, int centerCol, int rotation) {
+        int x = template2.col(j) - centerCol;
+        int y = centerRow - template2.row(j);
+        return centerCol + (x * Fingerprint.cos(rotation) - y * Fingerprint.sin(rotation)) - template1.col(i);
+    }
+}
@@ -0,0 +1,68 @@
+package cs107;
+
+import java.util.Arrays;
+
+/**
+ * Growable list of primitive <code>int</code>, used as worklist or queue
+ * without boxing.
+ */
+final class IntList {
+
+    private int[] values;
+    private int size;
+
+    /**
+     * @param capacity the initial capacity.
+     */
+    IntList(int capacity) {
+        values = new int[Math.max(capacity, 16)];
+    }
+
+    /**
+     * Appends a value, growing the backing array if needed.
+     *
+     * @param value the value to append.
+     */
+    void add(int value) {
+        if (size == values.length)
+            values = Arrays.copyOf(values, size * 2);
+        values[size++] = value;
+    }
+
+    /**
+     * @param index the index of the value, must be below {@link #size()}.
+     * @return the value at this index.
+     */
+    int get(int index) {
+        assert index < size;
+        return values[index];
+    }
+
+    /**
+     * @return the number of values.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return <code>true</code> if there are no values.
+     */
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return a new array containing the values.
+     */
+    int[] toArray() {
+        return Arrays.copyOf(values, size);
+    }
+
+    /**
+     * Removes all values, keeping the capacity.
+     */
+    void clear() {
+        size = 0;
+    }
+}
@@ -1,6 +1,7 @@
 package cs107;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
@@ -25,18 +26,38 @@ public class Main {
         testTransitions();
         testIdentical();
         testThinningStep();
+        testLookupThinningStep();
+        testBufferedThinningStep();
         testConnectedPixels();
+        testComponentLabels();
         testSpreadPixel();
         testSubClone();
         testMatchingMinutiaeCount();
+        testMinutiaeTemplate();
+        testMinutiaeGrid();
+        testMinutiaDescriptors();
+        testScore();
+        testMatchCascade();
+        testAlignmentSearch();
+        testHoughMatch();
+        testReadBinaryImage();
+        testToBinary();
 
         // passing but more tests recommended
         testThin();
+        testBitThinning();
+        testThinIncremental();
+        testThinParallel();
+        testPipeline();
         testComputeSlope();
         testComputeAngle();
         testComputeOrientation();
+        testComputeOrientations();
+        testExtractParallel();
+        testOrientationField();
         testApplyRotation();
         testApplyTranslation();
+        testApplyTransformation();
 
         //testExtract();
 
@@ -641,6 +662,90 @@ public class Main {
         }
     }
 
+    public static void testLookupThinningStep() {
+        {
+            System.out.print("test LookupThinningStep 1: ");
+            boolean[][] image = {
+                {false, false, true, true},
+                {false, false, true, false},
+                {false, false, false, false},
+                {false, false, false, false}
+            };
+            boolean[][] expected = Fingerprint.thinningStep(image, 0);
+            boolean[][] thinningStep = Thinning.thinningStep(image, 0);
+            if (Fingerprint.identical(thinningStep, expected))
+                System.out.println("OK");
+            else {
+                printError(expected, thinningStep);
+            }
+        }
+        {
+            System.out.print("test LookupThinningStep 2: ");
+            boolean[][] image = {
+                {false, false, false, false},
+                {false, false, false, false},
+                {true, true, false, false},
+                {true, false, false, false}
+            };
+            boolean[][] expected = Fingerprint.thinningStep(image, 1);
+            boolean[][] thinningStep = Thinning.thinningStep(image, 1);
+            if (Fingerprint.identical(thinningStep, expected))
+                System.out.println("OK");
+            else {
+                printError(expected, thinningStep);
+            }
+        }
+        {
+            System.out.print("test LookupThinningStep 3: ");
+            boolean[][] image = Helper.readBinary("src/resources/test_inputs/1_1_small.png");
+            boolean[][] expected = Helper.readBinary("src/resources/test_outputs/skeleton_1_1_small.png");
+            assert image != null;
+            boolean[][] skeleton = Thinning.thin(image);
+            if (Fingerprint.identical(skeleton, expected))
+                System.out.println("OK");
+            else {
+                printError(expected, skeleton);
+            }
+        }
+    }
+
+    public static void testBufferedThinningStep() {
+        {
+            System.out.print("test BufferedThinningStep 1: ");
+            boolean[][] image = {
+                {false, false, true, true},
+                {false, false, true, false},
+                {false, false, false, false},
+                {false, false, false, false}
+            };
+            boolean[][] expected = {
+                {false, false, true, false},
+                {false, false, false, false},
+                {false, false, false, false},
+                {false, false, false, false}
+            };
+            boolean[][] target = new boolean[4][4];
+            int deleted = Thinning.thinningStep(image, target, 0);
+            if (Fingerprint.identical(target, expected) && deleted == 2)
+                System.out.println("OK");
+            else {
+                printError(expected, target);
+            }
+        }
+        {
+            System.out.print("test BufferedThinningStep 2: ");
+            boolean[][] image = Helper.readBinary("src/resources/test_inputs/1_1_small.png");
+            boolean[][] expected = Helper.readBinary("src/resources/test_outputs/skeleton_1_1_small.png");
+            assert image != null;
+            boolean[][] skeleton = Thinning.thinInPlace(image, new boolean[image.length][image[0].length]);
+            if (Fingerprint.identical(skeleton, expected))
+                System.out.println("OK");
+            else {
+                printError(expected, skeleton);
+            }
+        }
+    }
+
     public static void testConnectedPixels() {
         {
             System.out.print("test ConnectedPixels 1: ");
@@ -707,6 +812,91 @@ public class Main {
         }
     }
 
+    public static void testComponentLabels() {
+        {
+            System.out.print("test ComponentLabels 1: ");
+            boolean[][] image = {
+                {true, false, false, true},
+                {false, false, true, true},
+                {false, true, true, false},
+                {false, false, false, false}
+            };
+            var labels = ComponentLabels.of(image);
+            if (labels.count() == 2
+                && labels.label(0, 0) != labels.label(2, 1)
+                && labels.label(0, 3) == labels.label(2, 1)
+                && labels.label(3, 3) == 0) {
+                System.out.println("OK");
+            } else {
+                printError(2, labels.count());
+            }
+        }
+        {
+            System.out.print("test ComponentLabels 2: ");
+            boolean[][] image = {
+                {true, false, false, true, true},
+                {true, false, true, true, false},
+                {true, true, false, false, false},
+                {false, true, false, true, false}
+            };
+            // the window contains the whole image, so both give the same pixels
+            boolean[][] expected = Fingerprint.connectedPixels(image, 2, 1, 5);
+            boolean[][] connectedPixels = ComponentLabels.of(image).connectedPixels(2, 1, 5);
+            if (arrayEqual(connectedPixels, expected)) {
+                System.out.println("OK");
+            } else {
+                printError(expected, connectedPixels);
+            }
+        }
+    }
+
+    public static void testOrientationField() {
+        {
+            System.out.print("test OrientationField 1: ");
+            // a horizontal ridge starting at (10, 5) and going right
+            boolean[][] image = new boolean[21][21];
+            for (int col = 5; col < 21; col++)
+                image[10][col] = true;
+            var field = OrientationField.of(image);
+            int orientation = Fingerprint.computeOrientation(field, image, 10, 5, OrientationField.DIRECTION_DISTANCE);
+            if (orientation == 0 && Math.abs(field.axis(10, 10)) < 1e-9) {
+                System.out.println("OK");
+            } else {
+                printError(0, orientation);
+            }
+        }
+        {
+            System.out.print("test OrientationField 2: ");
+            // a vertical ridge starting at (5, 10) and going down
+            boolean[][] image = new boolean[21][21];
+            for (int row = 5; row < 21; row++)
+                image[row][10] = true;
+            int orientation = Fingerprint.computeOrientation(
+                OrientationField.of(image), image, 5, 10, OrientationField.DIRECTION_DISTANCE);
+            if (orientation == 270) {
+                System.out.println("OK");
+            } else {
+                printError(270, orientation);
+            }
+        }
+        {
+            System.out.print("test OrientationField 3: ");
+            boolean[][] skeleton = Helper.readBinary("src/resources/test_outputs/skeleton_1_2.png");
+            List<int[]> expected = Fingerprint.extract(skeleton);
+            List<int[]> minutiae = Fingerprint.extract(skeleton, OrientationField.of(skeleton));
+            // same minutiae, only their orientation may change
+            if (minutiae.size() == expected.size()
+                && IntStream.range(0, expected.size())
+                .allMatch(i -> Arrays.equals(
+                    Arrays.copyOf(expected.get(i), 2),
+                    Arrays.copyOf(minutiae.get(i), 2)))) {
+                System.out.println("OK");
+            } else {
+                printError(expected, minutiae);
+            }
+        }
+    }
+
     public static void testSpreadPixel() {
         {
             System.out.print("test SpreadPixel 1: ");
@@ -910,7 +1100,7 @@ public class Main {
                 {false, false, false, false, false}
             };
             var expected = new ArrayList<int[]>();
-            expected.add(new int[]{2, 1, 270});
+            expected.add(new int[]{2, 1, 270, Fingerprint.ENDING});
 
             var minutiaes = Fingerprint.extract(image);
 
@@ -941,6 +1131,64 @@ public class Main {
         }
     }
 
+    public static void testComputeOrientations() {
+        {
+            System.out.print("test ComputeOrientations 1: ");
+            boolean[][] skeleton = Helper.readBinary("src/resources/test_inputs/skeletonTest.png");
+            int[] expected = {264, 270};
+            int[] orientations = OrientationEngine.computeOrientations(
+                skeleton,
+                new int[]{39, 53},
+                new int[]{21, 33},
+                Fingerprint.ORIENTATION_DISTANCE);
+            if (Arrays.equals(orientations, expected)) {
+                System.out.println("OK");
+            } else {
+                printError(expected, orientations);
+            }
+        }
+        {
+            System.out.print("test ComputeOrientations 2: ");
+            boolean[][] image = {
+                {false, false, false, true, false},
+                {false, false, true, true, false},
+                {false, true, true, false, false},
+                {false, false, false, false, false}
+            };
+            // the same as the regression on the connected pixels
+            int expected = Fingerprint.computeOrientation(image, 2, 1, 3);
+            int angle = OrientationEngine.computeOrientation(image, 2, 1, 3);
+            if (angle == expected) {
+                System.out.println("OK");
+            } else {
+                printError(expected, angle);
+            }
+        }
+        {
+            System.out.print("test ComputeOrientations 3: ");
+            boolean[][] image = {
+                {false, false, false, false, false},
+                {false, true, false, false, false},
+                {false, false, true, false, false},
+                {false, false, false, true, false},
+                {false, false, false, false, false}
+            };
+            // the ridge goes down, the raw angle is -45 degrees and must wrap around to 315
+            var connectedPixels = Fingerprint.connectedPixels(image, 1, 1, 3);
+            var slope = Fingerprint.computeSlope(connectedPixels, 1, 1);
+            double rawAngle = Fingerprint.computeAngle(connectedPixels, 1, 1, slope);
+            int expected = Fingerprint.computeOrientation(image, 1, 1, 3);
+            int[] angles = OrientationEngine.computeOrientations(image, new int[]{1}, new int[]{1}, 3);
+            if (rawAngle < 0 && expected == 315 && angles[0] == expected
+                && OrientationEngine.computeOrientation(image, 1, 1, 3) == expected
+                && Fingerprint.computeOrientation(ComponentLabels.of(image), 1, 1, 3) == expected) {
+                System.out.println("OK");
+            } else {
+                printError(expected, angles[0]);
+            }
+        }
+    }
+
     public static void testApplyRotation() {
         var minutia = new int[]{1, 3, 10};
         int[] result;
@@ -995,6 +1243,17 @@ public class Main {
                 printError(expected, result);
             }
         }
+        {
+            // beyond the rotations of the sine and cosine tables
+            result = Fingerprint.applyRotation(new int[]{3, 0, 10}, 0, 0, 810);
+            var expected = new int[]{0, 3, 100};
+            System.out.print("test applyRotation 6: ");
+            if (Arrays.equals(result, expected)) {
+                System.out.println("OK");
+            } else {
+                printError(expected, result);
+            }
+        }
     }
 
     public static void testApplyTranslation() {
@@ -1023,7 +1282,31 @@ public class Main {
     }
 
     public static void testApplyTransformation() {
-        // TODO test this
+        var minutia = new int[]{1, 3, 10};
+        {
+            int[] result = Fingerprint.applyTransformation(minutia, 0, 0, 10, 5, 90);
+            var expected = Fingerprint.applyTranslation(Fingerprint.applyRotation(minutia, 0, 0, 90), 10, 5);
+            System.out.print("test applyTransformation 1: ");
+            if (Arrays.equals(result, expected)) {
+                System.out.println("OK");
+            } else {
+                printError(expected, result);
+            }
+        }
+        {
+            List<int[]> result = Fingerprint.applyTransformation(List.of(minutia, new int[]{3, 0, 10}), 2, 1, -4, 7, -37);
+            List<int[]> expected = List.of(
+                Fingerprint.applyTransformation(minutia, 2, 1, -4, 7, -37),
+                Fingerprint.applyTransformation(new int[]{3, 0, 10}, 2, 1, -4, 7, -37));
+            System.out.print("test applyTransformation 2: ");
+            if (result.size() == expected.size()
+                && IntStream.range(0, expected.size())
+                .allMatch(i -> Arrays.equals(expected.get(i), result.get(i)))) {
+                System.out.println("OK");
+            } else {
+                printError(expected, result);
+            }
+        }
     }
 
     public static void testMatchingMinutiaeCount() {
@@ -1060,6 +1343,350 @@ public class Main {
                 printError(expected, result);
             }
         }
+
+        {
+            ArrayList<int[]> minutiae1 = new ArrayList<>();
+            minutiae1.add(new int[]{150, 50, 36, Fingerprint.ENDING});
+            minutiae1.add(new int[]{5, 25, 96, Fingerprint.BIFURCATION});
+            minutiae1.add(new int[]{15, 32, 109});
+            ArrayList<int[]> minutiae2 = new ArrayList<>();
+            minutiae2.add(new int[]{151, 50, 37, Fingerprint.BIFURCATION}); // same place, different type
+            minutiae2.add(new int[]{5, 25, 96, Fingerprint.BIFURCATION});
+            minutiae2.add(new int[]{15, 32, 109, Fingerprint.ENDING}); // untyped minutiae pair with any type
+            // the type is kept by the transformations
+            minutiae2 = new ArrayList<>(Fingerprint.applyTransformation(minutiae2, 0, 0, 0, 0, 0));
+            int result = Fingerprint.matchingMinutiaeCount(minutiae1, minutiae2, Fingerprint.DISTANCE_THRESHOLD, Fingerprint.ORIENTATION_DISTANCE);
+            int expected = 2;
+            if (result == expected) {
+                System.out.println("test MatchingMinutiaeCount 3 : OK");
+            } else {
+                printError(expected, result);
+            }
+        }
+    }
+
+    public static void testMinutiaeTemplate() {
+        List<int[]> minutiae = List.of(
+            new int[]{150, 50, 36, Fingerprint.ENDING},
+            new int[]{5, 25, 96, Fingerprint.BIFURCATION},
+            new int[]{15, 32, 109});
+        {
+            System.out.print("test MinutiaeTemplate 1: ");
+            List<int[]> result = MinutiaeTemplate.of(minutiae).toList();
+            if (result.size() == minutiae.size()
+                && IntStream.range(0, minutiae.size())
+                .allMatch(i -> Arrays.equals(minutiae.get(i), result.get(i)))) {
+                System.out.println("OK");
+            } else {
+                printError(minutiae, result);
+            }
+        }
+        {
+            System.out.print("test MinutiaeTemplate 2: ");
+            List<int[]> expected = Fingerprint.applyTransformation(minutiae, 10, 20, 3, -4, 33);
+            List<int[]> result = Fingerprint.applyTransformation(MinutiaeTemplate.of(minutiae), 10, 20, 3, -4, 33).toList();
+            if (result.size() == expected.size()
+                && IntStream.range(0, expected.size())
+                .allMatch(i -> Arrays.equals(expected.get(i), result.get(i)))) {
+                System.out.println("OK");
+            } else {
+                printError(expected, result);
+            }
+        }
+        {
+            System.out.print("test MinutiaeTemplate 3: ");
+            boolean[][] skeleton = Helper.readBinary("src/resources/test_outputs/skeleton_1_2.png");
+            var template = Fingerprint.extractTemplate(skeleton);
+            List<int[]> expected = Fingerprint.extract(skeleton);
+            List<int[]> result = template.toList();
+            if (result.size() == expected.size()
+                && IntStream.range(0, expected.size())
+                .allMatch(i -> Arrays.equals(expected.get(i), result.get(i)))
+                && Fingerprint.matchingMinutiaeCount(template, template, 0, 0) == expected.size()) {
+                System.out.println("OK");
+            } else {
+                printError(expected, result);
+            }
+        }
+    }
+
+    public static void testMinutiaeGrid() {
+        {
+            System.out.print("test MinutiaeGrid 1: ");
+            // minutiae on both sides of the borders of the cells
+            var minutiae1 = MinutiaeTemplate.of(List.of(
+                new int[]{0, 0, 10},
+                new int[]{4, 5, 10},
+                new int[]{5, 6, 10},
+                new int[]{20, 9, 10},
+                new int[]{20, 30, 10}));
+            var minutiae2 = MinutiaeTemplate.of(List.of(
+                new int[]{3, 4, 25},   // close to (0, 0) and (4, 5) with distance 5
+                new int[]{24, 12, 10}, // exactly 5 away from (20, 9)
+                new int[]{20, 36, 10}  // 6 away from (20, 30)
+            ));
+            int result = MinutiaeGrid.of(minutiae1, 5).count(minutiae2, 5, 20);
+            int expected = 4;
+            if (result == expected) {
+                System.out.println("OK");
+            } else {
+                printError(expected, result);
+            }
+        }
+        {
+            System.out.print("test MinutiaeGrid 2: ");
+            boolean[][] skeleton = Helper.readBinary("src/resources/test_outputs/skeleton_1_2.png");
+            var template = Fingerprint.extractTemplate(skeleton);
+            var moved = Fingerprint.applyTransformation(template, 100, 100, 2, -1, 3);
+            int count = template.matchingCount(moved, Fingerprint.DISTANCE_THRESHOLD, Fingerprint.ORIENTATION_THRESHOLD);
+            if (template.matchingCountAtLeast(moved, Fingerprint.DISTANCE_THRESHOLD, Fingerprint.ORIENTATION_THRESHOLD, count)
+                && !template.matchingCountAtLeast(moved, Fingerprint.DISTANCE_THRESHOLD, Fingerprint.ORIENTATION_THRESHOLD, count + 1)) {
+                System.out.println("OK");
+            } else {
+                printError(count, -1);
+            }
+        }
+        {
+            System.out.print("test MinutiaeGrid 3: ");
+            boolean[][] skeleton = Helper.readBinary("src/resources/test_outputs/skeleton_1_2.png");
+            var template = Fingerprint.extractTemplate(skeleton);
+            // transforming on the fly gives the same count as transforming first
+            int count = template.matchingCount(
+                Fingerprint.applyTransformation(template, 100, 100, 2, -1, 3),
+                Fingerprint.DISTANCE_THRESHOLD,
+                Fingerprint.ORIENTATION_THRESHOLD);
+            if (template.matchingCountAtLeast(template, 100, 100, 2, -1, 3,
+                Fingerprint.DISTANCE_THRESHOLD, Fingerprint.ORIENTATION_THRESHOLD, count)
+                && !template.matchingCountAtLeast(template, 100, 100, 2, -1, 3,
+                Fingerprint.DISTANCE_THRESHOLD, Fingerprint.ORIENTATION_THRESHOLD, count + 1)) {
+                System.out.println("OK");
+            } else {
+                printError(count, -1);
+            }
+        }
+    }
+
+    public static void testMinutiaDescriptors() {
+        {
+            System.out.print("test MinutiaDescriptors 1: ");
+            boolean[][] skeleton = Helper.readBinary("src/resources/test_outputs/skeleton_1_2.png");
+            var template = Fingerprint.extractTemplate(skeleton);
+            // the descriptors of the minutiae don't change once they are rotated and translated
+            var moved = MinutiaeTemplate.of(Fingerprint.applyTransformation(template, 100, 100, 7, -12, 90).toList())
+                .withDescriptors();
+            boolean result = template.hasDescriptors()
+                && moved.hasDescriptors()
+                && IntStream.range(0, template.size()).allMatch(i -> MinutiaeTemplate.canAnchor(template, i, moved, i));
+            if (result) {
+                System.out.println("OK");
+            } else {
+                printError(true, result);
+            }
+        }
+        {
+            System.out.print("test MinutiaDescriptors 2: ");
+            var template1 = Fingerprint.extractTemplate(Helper.readBinary("src/resources/test_outputs/skeleton_1_1.png"));
+            var template2 = Fingerprint.extractTemplate(Helper.readBinary("src/resources/test_outputs/skeleton_1_2.png"));
+            var template3 = Fingerprint.extractTemplate(Helper.readBinary("src/resources/test_outputs/skeleton_2_1.png"));
+            boolean result = Fingerprint.match(template1, template2) && !Fingerprint.match(template1, template3);
+            if (result) {
+                System.out.println("OK");
+            } else {
+                printError(true, result);
+            }
+        }
+    }
+
+    public static void testScore() {
+        var template1 = Fingerprint.extractTemplate(Helper.readBinary("src/resources/test_outputs/skeleton_1_1.png"));
+        var template2 = Fingerprint.extractTemplate(Helper.readBinary("src/resources/test_outputs/skeleton_1_2.png"));
+        var template3 = Fingerprint.extractTemplate(Helper.readBinary("src/resources/test_outputs/skeleton_2_1.png"));
+        {
+            System.out.print("test Score 1: ");
+            // all the minutiae overlap once a translated copy is moved back
+            var score = Fingerprint.score(template1, Fingerprint.applyTransformation(template1, 100, 100, 7, -12, 0));
+            int expected = template1.size();
+            int result = score.count();
+            if (result == expected && score.fraction() == 1 && score.score() == 1) {
+                System.out.println("OK");
+            } else {
+                printError(expected, result);
+            }
+        }
+        {
+            System.out.print("test Score 2: ");
+            var score = Fingerprint.score(template1, template2);
+            int expected = score.count();
+            int result = Fingerprint.matchingMinutiaeCount(template1, score.align(template2),
+                Fingerprint.DISTANCE_THRESHOLD, Fingerprint.ORIENTATION_THRESHOLD);
+            if (result == expected && score.matches(Fingerprint.FOUND_THRESHOLD)) {
+                System.out.println("OK");
+            } else {
+                printError(expected, result);
+            }
+        }
+        {
+            System.out.print("test Score 3: ");
+            var score = Fingerprint.score(template1, template3);
+            boolean expected = Fingerprint.match(template1, template3);
+            boolean result = score.matches(Fingerprint.FOUND_THRESHOLD);
+            if (result == expected && score.count() < Fingerprint.FOUND_THRESHOLD) {
+                System.out.println("OK");
+            } else {
+                printError(expected, result);
+            }
+        }
+    }
+
+    public static void testMatchCascade() {
+        var template1 = Fingerprint.extractTemplate(Helper.readBinary("src/resources/test_outputs/skeleton_1_1.png"));
+        var template2 = Fingerprint.extractTemplate(Helper.readBinary("src/resources/test_outputs/skeleton_1_2.png"));
+        var template3 = Fingerprint.extractTemplate(Helper.readBinary("src/resources/test_outputs/skeleton_2_1.png"));
+        var cascade = MatchCascade.of(EnumSet.allOf(MatchCascade.Stage.class));
+        {
+            System.out.print("test MatchCascade 1: ");
+            boolean result = cascade.match(template1, template2) && !cascade.match(template1, template3);
+            if (result) {
+                System.out.println("OK");
+            } else {
+                printError(true, result);
+            }
+        }
+        {
+            System.out.print("test MatchCascade 2: ");
+            // the orientations of a rotated template have the same spectrum
+            var rotated = Fingerprint.applyTransformation(template1, 100, 100, 0, 0, 77);
+            double result = MatchCascade.histogramDistance(template1.orientationSpectrum(), rotated.orientationSpectrum());
+            if (result < 1e-9) {
+                System.out.println("OK");
+            } else {
+                printError(0.0, result);
+            }
+        }
+        {
+            System.out.print("test MatchCascade 3: ");
+            // too few minutiae can never match, and the default cascade has no heuristic stage
+            var small = MinutiaeTemplate.of(template1.toList().subList(0, Fingerprint.FOUND_THRESHOLD - 1));
+            boolean result = MatchCascade.of().match(small, template1);
+            if (!result && MatchCascade.of().rejectingStage(template1, template3) == null
+                && MatchCascade.of().match(template1, template2) == Fingerprint.match(template1, template2)) {
+                System.out.println("OK");
+            } else {
+                printError(false, result);
+            }
+        }
+    }
+
+    public static void testAlignmentSearch() {
+        var pool = new ForkJoinPool(4);
+        try {
+            var template1 = MinutiaeTemplate.of(FingerprintPipeline.process("src/resources/fingerprints/1_1.png").minutiae());
+            var template2 = MinutiaeTemplate.of(FingerprintPipeline.process("src/resources/fingerprints/1_2.png").minutiae());
+            var template3 = MinutiaeTemplate.of(FingerprintPipeline.process("src/resources/fingerprints/2_1.png").minutiae());
+            {
+                System.out.print("test AlignmentSearch 1: ");
+                boolean expected = Fingerprint.match(template1, template2);
+                boolean result = Fingerprint.match(template1, template2, pool);
+                if (result == expected) {
+                    System.out.println("OK");
+                } else {
+                    printError(expected, result);
+                }
+            }
+            {
+                System.out.print("test AlignmentSearch 2: ");
+                boolean expected = Fingerprint.match(template1, template3);
+                boolean result = Fingerprint.match(template1, template3, pool);
+                if (result == expected) {
+                    System.out.println("OK");
+                } else {
+                    printError(expected, result);
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    public static void testHoughMatch() {
+        var template1 = MinutiaeTemplate.of(FingerprintPipeline.process("src/resources/fingerprints/1_1.png").minutiae());
+        var template2 = MinutiaeTemplate.of(FingerprintPipeline.process("src/resources/fingerprints/1_2.png").minutiae());
+        var template3 = MinutiaeTemplate.of(FingerprintPipeline.process("src/resources/fingerprints/2_1.png").minutiae());
+        {
+            System.out.print("test HoughMatch 1: ");
+            boolean expected = true;
+            boolean result = Fingerprint.match(template1, template2, Fingerprint.MatchEngine.HOUGH);
+            if (result == expected) {
+                System.out.println("OK");
+            } else {
+                printError(expected, result);
+            }
+        }
+        {
+            System.out.print("test HoughMatch 2: ");
+            boolean expected = false;
+            boolean result = Fingerprint.match(template1, template3, Fingerprint.MatchEngine.HOUGH);
+            if (result == expected) {
+                System.out.println("OK");
+            } else {
+                printError(expected, result);
+            }
+        }
+        {
+            System.out.print("test HoughMatch 3: ");
+            // orientations on both sides of 0 and 360 degrees, the voted rotation of -10 degrees must wrap them around
+            var minutiae = new ArrayList<int[]>();
+            for (int k = 0; k < Fingerprint.FOUND_THRESHOLD; k++)
+                minutiae.add(new int[]{50 + 30 * (k / 5), 50 + 30 * (k % 5), k % 2 == 0 ? 3 : 357});
+            var template = MinutiaeTemplate.of(minutiae);
+            var rotated = Fingerprint.applyTransformation(template, 100, 100, 0, 0, 10);
+            boolean expected = true;
+            boolean result = Fingerprint.match(template, rotated, Fingerprint.MatchEngine.HOUGH);
+            if (result == expected) {
+                System.out.println("OK");
+            } else {
+                printError(expected, result);
+            }
+        }
+    }
+
+    public static void testReadBinaryImage() {
+        {
+            boolean[][] expected = Helper.toBinary(Helper.readARGB("src/resources/fingerprints/1_1.png"));
+            BinaryImage image = Helper.readBinaryImage("src/resources/fingerprints/1_1.png");
+            assert image != null;
+            if (Fingerprint.identical(expected, image.toBoolean())) {
+                System.out.println("test readBinaryImage 1: OK");
+            } else {
+                printError(expected, image.toBoolean());
+            }
+        }
+        {
+            boolean[][] expected = Helper.toBinary(Helper.readARGB("src/resources/test_inputs/1_1_small.png"));
+            boolean[][] image = Helper.readBinary("src/resources/test_inputs/1_1_small.png");
+            if (Fingerprint.identical(expected, image)) {
+                System.out.println("test readBinaryImage 2: OK");
+            } else {
+                printError(expected, image);
+            }
+        }
+    }
+
+    public static void testToBinary() {
+        // the last two pixels are exactly on the threshold, the rounding makes the first one dark
+        int[][] image = {{0x000000, 0xFFFFFF, 0x808080, 0x7F7F7F, 0x00CC44, 0x01ADE1}};
+        boolean[][] expected = {{true, false, false, true, true, false}};
+        var binarization = Helper.BINARIZATION;
+        for (var mode : Helper.Binarization.values()) {
+            Helper.BINARIZATION = mode;
+            boolean[][] result = Helper.toBinary(image);
+            if (Fingerprint.identical(expected, result)) {
+                System.out.println("test toBinary " + mode + ": OK");
+            } else {
+                printError(expected, result);
+            }
+        }
+        Helper.BINARIZATION = binarization;
     }
 
     /**
@@ -1116,6 +1743,123 @@ public class Main {
         }
     }
 
+    public static void testBitThinning() {
+        {
+            boolean[][] image1 = Helper.readBinary("src/resources/test_inputs/1_1_small.png");
+            boolean[][] expected = Helper.readBinary("src/resources/test_outputs/skeleton_1_1_small.png");
+            assert image1 != null;
+            boolean[][] skeleton1 = BitThinning.thin(image1);
+            if (Fingerprint.identical(expected, skeleton1)) {
+                System.out.println("test BitThinning 1: OK");
+            } else {
+                printError(expected, skeleton1);
+            }
+        }
+        {
+            boolean[][] image1 = Helper.readBinary("src/resources/fingerprints/2_1.png");
+            assert image1 != null;
+            boolean[][] expected = Fingerprint.thin(image1);
+            boolean[][] skeleton1 = BitThinning.thin(image1);
+            if (Fingerprint.identical(expected, skeleton1)) {
+                System.out.println("test BitThinning 2: OK");
+            } else {
+                printError(expected, skeleton1);
+            }
+        }
+    }
+
+    public static void testThinIncremental() {
+        {
+            boolean[][] image1 = Helper.readBinary("src/resources/test_inputs/1_1_small.png");
+            boolean[][] expected = Helper.readBinary("src/resources/test_outputs/skeleton_1_1_small.png");
+            assert image1 != null;
+            boolean[][] skeleton1 = Thinning.thinIncremental(image1);
+            if (Fingerprint.identical(expected, skeleton1)) {
+                System.out.println("test thinIncremental 1: OK");
+            } else {
+                printError(expected, skeleton1);
+            }
+        }
+        {
+            boolean[][] image1 = Helper.readBinary("src/resources/fingerprints/1_2.png");
+            boolean[][] expected = Helper.readBinary("src/resources/test_outputs/skeleton_1_2.png");
+            assert image1 != null;
+            boolean[][] skeleton1 = Thinning.thinIncremental(image1);
+            if (Fingerprint.identical(expected, skeleton1)) {
+                System.out.println("test thinIncremental 2: OK");
+            } else {
+                printError(expected, skeleton1);
+            }
+        }
+    }
+
+    public static void testThinParallel() {
+        {
+            boolean[][] image1 = Helper.readBinary("src/resources/fingerprints/1_1.png");
+            boolean[][] expected = Helper.readBinary("src/resources/test_outputs/skeleton_1_1.png");
+            assert image1 != null;
+            var pool = new ForkJoinPool(4);
+            try {
+                boolean[][] skeleton1 = Thinning.thinParallel(image1, pool);
+                if (Fingerprint.identical(expected, skeleton1)) {
+                    System.out.println("test thinParallel 1: OK");
+                } else {
+                    printError(expected, skeleton1);
+                }
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+
+    public static void testPipeline() {
+        {
+            var result = FingerprintPipeline.process(
+                "src/resources/fingerprints/1_2.png",
+                EnumSet.of(FingerprintPipeline.Artifact.SKELETON));
+            boolean[][] expected = Helper.readBinary("src/resources/test_outputs/skeleton_1_2.png");
+            assert result != null;
+            if (Fingerprint.identical(expected, result.skeleton()) && result.binary() == null) {
+                System.out.println("test pipeline 1: OK");
+            } else {
+                printError(expected, result.skeleton());
+            }
+        }
+        {
+            var result = FingerprintPipeline.process("src/resources/fingerprints/1_2.png");
+            List<int[]> expected = Fingerprint.extract(Helper.readBinary("src/resources/test_outputs/skeleton_1_2.png"));
+            assert result != null;
+            if (result.skeleton() == null && result.minutiae().size() == expected.size()
+                && IntStream.range(0, expected.size())
+                .allMatch(i -> Arrays.equals(expected.get(i), result.minutiae().get(i)))) {
+                System.out.println("test pipeline 2: OK");
+            } else {
+                printError(expected, result.minutiae());
+            }
+        }
+    }
+
+    public static void testExtractParallel() {
+        {
+            boolean[][] skeleton = Helper.readBinary("src/resources/test_outputs/skeleton_1_2.png");
+            List<int[]> expected = Fingerprint.extract(skeleton);
+            var pool = new ForkJoinPool(3);
+            List<int[]> minutiae;
+            try {
+                minutiae = Fingerprint.extract(skeleton, pool);
+            } finally {
+                pool.shutdown();
+            }
+            if (minutiae.size() == expected.size()
+                && IntStream.range(0, expected.size())
+                .allMatch(i -> Arrays.equals(expected.get(i), minutiae.get(i)))) {
+                System.out.println("test extractParallel 1: OK");
+            } else {
+                printError(expected, minutiae);
+            }
+        }
+    }
+
     public static void testDrawSkeleton(String name) {
         {
             boolean[][] image1 = Helper.readBinary("src/resources/fingerprints/" + name + ".png");
@@ -1149,8 +1893,8 @@ public class Main {
             boolean[][] skeleton1 = Helper.readBinary("src/resources/test_inputs/skeletonTest.png");
             List<int[]> minutiae1 = Fingerprint.extract(skeleton1);
             List<int[]> expected = new ArrayList<>();
-            expected.add(new int[]{39, 21, 264});
-            expected.add(new int[]{53, 33, 270});
+            expected.add(new int[]{39, 21, 264, Fingerprint.BIFURCATION});
+            expected.add(new int[]{53, 33, 270, Fingerprint.BIFURCATION});
 
             System.out.print("Expected minutiae: ");
             printMinutiae(expected);
@@ -1171,15 +1915,13 @@ public class Main {
      * file name2.png. The third parameter indicates if we expected a match or not.
      */
     public static boolean testCompareFingerprints(String name1, String name2, boolean expectedResult) {
-        boolean[][] image1 = Helper.readBinary("src/resources/fingerprints/" + name1 + ".png");
-        assert image1 != null;
-        boolean[][] skeleton1 = Fingerprint.thin(image1);
-        List<int[]> minutiae1 = Fingerprint.extract(skeleton1);
-
-        boolean[][] image2 = Helper.readBinary("src/resources/fingerprints/" + name2 + ".png");
-        assert image2 != null;
-        boolean[][] skeleton2 = Fingerprint.thin(image2);
-        List<int[]> minutiae2 = Fingerprint.extract(skeleton2);
+        var result1 = FingerprintPipeline.process("src/resources/fingerprints/" + name1 + ".png");
+        assert result1 != null;
+        List<int[]> minutiae1 = result1.minutiae();
+
+        var result2 = FingerprintPipeline.process("src/resources/fingerprints/" + name2 + ".png");
+        assert result2 != null;
+        List<int[]> minutiae2 = result2.minutiae();
 
         boolean isMatch = Fingerprint.match(minutiae1, minutiae2);
         var result = new StringBuilder();
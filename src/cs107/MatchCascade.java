@@ -0,0 +1,177 @@
+package cs107;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Compares two templates with cheap tests first, and only with
+ * {@link Fingerprint#match(MinutiaeTemplate, MinutiaeTemplate)} if none of
+ * them rejects the pair.
+ * <p>
+ * A pair is always rejected when the first template has less than
+ * {@link Fingerprint#FOUND_THRESHOLD} minutiae, since they can't match. This
+ * check never changes the result of the full matcher, and it is the only one
+ * of the default cascade. The stages are heuristics: they can reject a pair
+ * that the full matcher would accept, so they only run when they are named
+ * when the cascade is built. They run in the order of {@link Stage}, from the
+ * cheapest one.
+ * <p>
+ * In an identification, many templates of the gallery are rejected by the
+ * first stages, which only compare a few numbers cached with each template,
+ * without looking at the minutiae.
+ */
+public final class MatchCascade {
+
+    /**
+     * The heuristic stages that can reject a pair before the full matcher.
+     */
+    public enum Stage {
+        /**
+         * Rejects the templates whose numbers of minutiae are too different,
+         * see {@link #MIN_COUNT_RATIO}.
+         */
+        COUNT_RATIO,
+        /**
+         * Rejects the templates whose histograms of orientations are too
+         * different whatever the rotation, see
+         * {@link #MAX_HISTOGRAM_DISTANCE}.
+         */
+        ORIENTATION_HISTOGRAM,
+        /**
+         * Rejects the templates that don't overlap enough when aligned on a
+         * subsample of their minutiae, see {@link #COARSE_STEP} and
+         * {@link #COARSE_THRESHOLD}.
+         */
+        COARSE_ALIGNMENT
+    }
+
+    /**
+     * The smallest ratio between the number of minutiae of the smallest
+     * template and of the largest one.
+     */
+    public static final double MIN_COUNT_RATIO = 0.4;
+
+    /**
+     * The largest distance between the histograms of orientations, as the sum
+     * of the differences of the magnitudes of their coefficients, between
+     * <code>0</code> and {@link MinutiaeTemplate#HARMONICS}.
+     */
+    public static final double MAX_HISTOGRAM_DISTANCE = 0.65;
+
+    /**
+     * One minutia of the first template out of <code>COARSE_STEP</code> is used
+     * as anchor by the coarse alignment.
+     */
+    public static final int COARSE_STEP = 2;
+
+    /**
+     * The number of overlapping minutiae that the coarse alignment must reach.
+     */
+    public static final int COARSE_THRESHOLD = 10;
+
+    private final Set<Stage> stages;
+
+    private MatchCascade(Set<Stage> stages) {
+        this.stages = stages;
+    }
+
+    /**
+     * @return a cascade without heuristic stages, which gives the same results
+     * as {@link Fingerprint#match(MinutiaeTemplate, MinutiaeTemplate)}.
+     */
+    public static MatchCascade of() {
+        return of(EnumSet.noneOf(Stage.class));
+    }
+
+    /**
+     * @param stages the heuristic stages that can reject a pair, on top of the
+     *               exact checks.
+     * @return a cascade with the given stages.
+     */
+    public static MatchCascade of(Set<Stage> stages) {
+        assert stages != null;
+        return new MatchCascade(stages.isEmpty() ? EnumSet.noneOf(Stage.class) : EnumSet.copyOf(stages));
+    }
+
+    /**
+     * Compares the templates of two fingerprints.
+     *
+     * @param template1 the template of the first fingerprint.
+     * @param template2 the template of the second fingerprint.
+     * @return <code>true</code> if no stage rejects them and they match.
+     */
+    public boolean match(MinutiaeTemplate template1, MinutiaeTemplate template2) {
+        assert template1 != null;
+        assert template2 != null;
+        return template1.size() >= Fingerprint.FOUND_THRESHOLD
+            && rejectingStage(template1, template2) == null
+            && Fingerprint.match(template1, template2);
+    }
+
+    /**
+     * Runs the stages of the cascade on two templates, without the full
+     * matcher.
+     *
+     * @param template1 the template of the first fingerprint.
+     * @param template2 the template of the second fingerprint.
+     * @return the first stage that rejects the templates, or <code>null</code>
+     * if none does.
+     */
+    public Stage rejectingStage(MinutiaeTemplate template1, MinutiaeTemplate template2) {
+        assert template1 != null;
+        assert template2 != null;
+        if (stages.contains(Stage.COUNT_RATIO) && countRatio(template1, template2) < MIN_COUNT_RATIO)
+            return Stage.COUNT_RATIO;
+        if (stages.contains(Stage.ORIENTATION_HISTOGRAM)
+            && histogramDistance(template1.orientationSpectrum(), template2.orientationSpectrum()) > MAX_HISTOGRAM_DISTANCE)
+            return Stage.ORIENTATION_HISTOGRAM;
+        if (stages.contains(Stage.COARSE_ALIGNMENT) && !coarselyAligns(template1, template2))
+            return Stage.COARSE_ALIGNMENT;
+        return null;
+    }
+
+    /**
+     * @return the ratio between the number of minutiae of the smallest
+     * template and of the largest one, <code>1</code> if both are empty.
+     */
+    static double countRatio(MinutiaeTemplate template1, MinutiaeTemplate template2) {
+        int smallest = Math.min(template1.size(), template2.size());
+        int largest = Math.max(template1.size(), template2.size());
+        return largest == 0 ? 1 : (double) smallest / largest;
+    }
+
+    /**
+     * Computes the distance between the histograms of orientations of two
+     * templates, whatever their rotation.
+     *
+     * @param spectrum1 the spectrum of the first histogram, as returned by
+     *                  {@link MinutiaeTemplate#orientationSpectrum()}.
+     * @param spectrum2 the spectrum of the second histogram.
+     * @return the sum of the differences of the magnitudes of their
+     * coefficients.
+     */
+    static double histogramDistance(double[] spectrum1, double[] spectrum2) {
+        double distance = 0;
+        for (int harmonic = 0; harmonic < spectrum1.length; harmonic++)
+            distance += Math.abs(spectrum1[harmonic] - spectrum2[harmonic]);
+        return distance;
+    }
+
+    /**
+     * Aligns the templates on one minutia of the first template out of
+     * {@link #COARSE_STEP}, with the rotation in the middle of the ones of
+     * {@link Fingerprint#match(MinutiaeTemplate, MinutiaeTemplate)}.
+     *
+     * @return <code>true</code> if one of these alignments makes at least
+     * {@link #COARSE_THRESHOLD} minutiae overlap.
+     */
+    static boolean coarselyAligns(MinutiaeTemplate template1, MinutiaeTemplate template2) {
+        for (int i = 0; i < template1.size(); i += COARSE_STEP)
+            for (int j = 0; j < template2.size(); j++) {
+                if (!MinutiaeTemplate.canAnchor(template1, i, template2, j)) continue;
+                int rotation = template2.angle(j) - template1.angle(i);
+                if (Fingerprint.aligns(template1, i, template2, j, rotation, COARSE_THRESHOLD)) return true;
+            }
+        return false;
+    }
+}
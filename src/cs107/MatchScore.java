@@ -0,0 +1,132 @@
+package cs107;
+
+/**
+ * The result of the comparison of two templates: the most minutiae that
+ * overlap for one alignment, and this alignment.
+ * <p>
+ * The alignment is the transformation of the second template, as given to
+ * {@link Fingerprint#applyTransformation(MinutiaeTemplate, int, int, int, int, int)}.
+ * Deciding if the templates match only compares the count to a threshold, so
+ * the same scores can be compared to other thresholds or ranked without
+ * comparing the templates again.
+ *
+ * @see Fingerprint#score(MinutiaeTemplate, MinutiaeTemplate)
+ */
+public final class MatchScore {
+
+    private final int count;
+    private final int size1;
+    private final int size2;
+    private final int centerRow;
+    private final int centerCol;
+    private final int rowTranslation;
+    private final int colTranslation;
+    private final int rotation;
+
+    MatchScore(int count, int size1, int size2,
+               int centerRow, int centerCol, int rowTranslation, int colTranslation, int rotation) {
+        this.count = count;
+        this.size1 = size1;
+        this.size2 = size2;
+        this.centerRow = centerRow;
+        this.centerCol = centerCol;
+        this.rowTranslation = rowTranslation;
+        this.colTranslation = colTranslation;
+        this.rotation = rotation;
+    }
+
+    /**
+     * @return the number of minutiae of the first template that overlap a
+     * minutia of the second one, for the best alignment.
+     */
+    public int count() {
+        return count;
+    }
+
+    /**
+     * @return the number of minutiae of the first template.
+     */
+    public int size1() {
+        return size1;
+    }
+
+    /**
+     * @return the number of minutiae of the second template.
+     */
+    public int size2() {
+        return size2;
+    }
+
+    /**
+     * @return the fraction of the minutiae of the first template that overlap,
+     * between <code>0</code> and <code>1</code>.
+     */
+    public double fraction() {
+        return size1 == 0 ? 0 : (double) count / size1;
+    }
+
+    /**
+     * Normalises the count by the sizes of both templates, so that large
+     * templates don't score higher only because they have more minutiae to
+     * overlap.
+     *
+     * @return <code>count * count / (size1 * size2)</code>, at most <code>1</code>.
+     */
+    public double score() {
+        if (size1 == 0 || size2 == 0) return 0;
+        return Math.min(1, (double) count * count / ((double) size1 * size2));
+    }
+
+    /**
+     * @param threshold the number of overlapping minutiae needed.
+     * @return <code>true</code> if the templates match for this threshold.
+     */
+    public boolean matches(int threshold) {
+        return count >= threshold;
+    }
+
+    /**
+     * @return the row around which the second template is rotated.
+     */
+    public int centerRow() {
+        return centerRow;
+    }
+
+    /**
+     * @return the column around which the second template is rotated.
+     */
+    public int centerCol() {
+        return centerCol;
+    }
+
+    /**
+     * @return the vertical translation of the second template.
+     */
+    public int rowTranslation() {
+        return rowTranslation;
+    }
+
+    /**
+     * @return the horizontal translation of the second template.
+     */
+    public int colTranslation() {
+        return colTranslation;
+    }
+
+    /**
+     * @return the rotation of the second template, in degrees.
+     */
+    public int rotation() {
+        return rotation;
+    }
+
+    /**
+     * @param template2 the second template.
+     * @return the second template, moved onto the first one with the best
+     * alignment.
+     */
+    public MinutiaeTemplate align(MinutiaeTemplate template2) {
+        assert template2 != null;
+        return template2.transform(centerRow, centerCol, rowTranslation, colTranslation, rotation);
+    }
+}
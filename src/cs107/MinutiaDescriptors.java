@@ -0,0 +1,144 @@
+package cs107;
+
+import java.util.Arrays;
+
+/**
+ * The local descriptors of the minutiae of a template: for each minutia, where
+ * its nearest neighbours are relatively to it.
+ * <p>
+ * Each neighbour is described by its distance to the minutia, the direction
+ * in which it is seen from the minutia and its own angle, both relative to the
+ * angle of the minutia. None of them changes when the fingerprint is rotated
+ * or translated, so two minutiae that are the same minutia of two prints of a
+ * finger have similar descriptors, whatever the alignment of the prints. Most
+ * pairs of unrelated minutiae don't, and aligning the templates on them can
+ * be skipped.
+ * <p>
+ * Extraction misses some minutiae and adds spurious ones, so two descriptors
+ * are similar as soon as {@link #SIMILAR_NEIGHBOURS} of their neighbours
+ * agree, not all of them.
+ *
+ * @see MinutiaeTemplate#withDescriptors()
+ */
+final class MinutiaDescriptors {
+
+    /**
+     * The number of nearest neighbours of each minutia.
+     */
+    static final int NEIGHBOURS = 6;
+
+    /**
+     * The number of neighbours that must agree for two descriptors to be
+     * similar.
+     */
+    static final int SIMILAR_NEIGHBOURS = 3;
+
+    /**
+     * The maximum difference of distance between two agreeing neighbours, in
+     * pixels.
+     */
+    static final int DISTANCE_TOLERANCE = 5;
+
+    /**
+     * The maximum difference of direction and of angle between two agreeing
+     * neighbours, in degrees.
+     */
+    static final int ANGLE_TOLERANCE = 20;
+
+    // the neighbours of minutia i are at the indices i * NEIGHBOURS to (i + 1) * NEIGHBOURS,
+    // by increasing distance, the missing ones of the small templates are at the end with a distance of -1
+    private final int[] distances;
+    private final int[] directions;
+    private final int[] angles;
+
+    private MinutiaDescriptors(int[] distances, int[] directions, int[] angles) {
+        this.distances = distances;
+        this.directions = directions;
+        this.angles = angles;
+    }
+
+    /**
+     * Computes the descriptors of the minutiae of a template.
+     *
+     * @param template the template.
+     * @return the descriptors of its minutiae.
+     */
+    static MinutiaDescriptors of(MinutiaeTemplate template) {
+        final int size = template.size();
+        int[] rows = template.rows();
+        int[] cols = template.cols();
+        int[] minutiaAngles = template.angles();
+        int[] distances = new int[size * NEIGHBOURS];
+        int[] directions = new int[size * NEIGHBOURS];
+        int[] angles = new int[size * NEIGHBOURS];
+        Arrays.fill(distances, -1);
+
+        // the squared distances and indices of the nearest neighbours found so far, by increasing distance
+        long[] nearest = new long[NEIGHBOURS];
+        int[] nearestIndices = new int[NEIGHBOURS];
+        for (int i = 0; i < size; i++) {
+            int found = 0;
+            for (int n = 0; n < size; n++) {
+                if (n == i) continue;
+                long rowDistance = rows[n] - rows[i];
+                long colDistance = cols[n] - cols[i];
+                long squared = rowDistance * rowDistance + colDistance * colDistance;
+                if (found == NEIGHBOURS && squared >= nearest[NEIGHBOURS - 1]) continue;
+                int position = found < NEIGHBOURS ? found++ : NEIGHBOURS - 1;
+                for (; position > 0 && nearest[position - 1] > squared; position--) {
+                    nearest[position] = nearest[position - 1];
+                    nearestIndices[position] = nearestIndices[position - 1];
+                }
+                nearest[position] = squared;
+                nearestIndices[position] = n;
+            }
+            for (int k = 0; k < found; k++) {
+                int n = nearestIndices[k];
+                // same convention as Fingerprint#computeOrientation, with the rows going up
+                int direction = (int) Math.round(Math.toDegrees(Math.atan2(rows[i] - rows[n], cols[n] - cols[i])));
+                distances[i * NEIGHBOURS + k] = (int) Math.round(Math.sqrt(nearest[k]));
+                directions[i * NEIGHBOURS + k] = Math.floorMod(direction - minutiaAngles[i], 360);
+                angles[i * NEIGHBOURS + k] = Math.floorMod(minutiaAngles[n] - minutiaAngles[i], 360);
+            }
+        }
+        return new MinutiaDescriptors(distances, directions, angles);
+    }
+
+    /**
+     * Checks if the descriptors of two minutiae are similar, which is when at
+     * least {@link #SIMILAR_NEIGHBOURS} neighbours of the first one are close
+     * to a neighbour of the second one in distance, direction and angle.
+     *
+     * @return <code>true</code> if the minutia <code>index1</code> of
+     * <code>descriptors1</code> may be the minutia <code>index2</code> of
+     * <code>descriptors2</code>.
+     */
+    static boolean similar(MinutiaDescriptors descriptors1, int index1, MinutiaDescriptors descriptors2, int index2) {
+        int agreeing = 0;
+        for (int k1 = index1 * NEIGHBOURS; k1 < (index1 + 1) * NEIGHBOURS; k1++) {
+            int distance1 = descriptors1.distances[k1];
+            if (distance1 < 0) break;
+            for (int k2 = index2 * NEIGHBOURS; k2 < (index2 + 1) * NEIGHBOURS; k2++) {
+                int distance2 = descriptors2.distances[k2];
+                // the neighbours are sorted by distance, the next ones are all too far
+                if (distance2 < 0 || distance2 > distance1 + DISTANCE_TOLERANCE) break;
+                if (distance2 < distance1 - DISTANCE_TOLERANCE) continue;
+                if (angleDifference(descriptors1.directions[k1], descriptors2.directions[k2]) <= ANGLE_TOLERANCE
+                    && angleDifference(descriptors1.angles[k1], descriptors2.angles[k2]) <= ANGLE_TOLERANCE) {
+                    if (++agreeing >= SIMILAR_NEIGHBOURS) return true;
+                    break;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the difference between two angles between <code>0</code> and
+     * <code>360</code>, between <code>0</code> and <code>180</code>.
+     */
+    private static int angleDifference(int angle1, int angle2) {
+        int difference = Math.abs(angle1 - angle2);
+        return Math.min(difference, 360 - difference);
+    }
+}
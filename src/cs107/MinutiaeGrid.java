@@ -0,0 +1,345 @@
+package cs107;
+
+import java.util.Arrays;
+
+/**
+ * A uniform grid over the minutiae of a template, to find the minutiae close
+ * to a point without comparing it to all of them.
+ * <p>
+ * The cells cover the bounding box of the minutiae. The minutiae are stored
+ * cell after cell, and the cell of index <code>cell</code> holds the minutiae
+ * from <code>cellStarts[cell]</code> to <code>cellStarts[cell + 1]</code>. With
+ * cells as large as the maximum distance, only the 3x3 cells around a point
+ * need to be checked, so a minutia can overlap at most as many minutiae as
+ * the 3x3 cells around it hold.
+ *
+ * @see MinutiaeTemplate#matchingCount(MinutiaeTemplate, int, int)
+ */
+public final class MinutiaeGrid {
+
+    private final int cellSize;
+    private final int minRow;
+    private final int minCol;
+    private final int gridRows;
+    private final int gridCols;
+    private final int[] cellStarts;
+    // the number of minutiae in the 3x3 cells around each cell, with a margin of one cell around the grid,
+    // at index (gridRow + 1) * (gridCols + 2) + gridCol + 1
+    private final int[] neighbours;
+    // the minutiae of the template, ordered by cell
+    private final int[] rows;
+    private final int[] cols;
+    private final int[] angles;
+    private final int[] types;
+
+    private MinutiaeGrid(int cellSize, int minRow, int minCol, int gridRows, int gridCols, int[] cellStarts,
+                         int[] neighbours, int[] rows, int[] cols, int[] angles, int[] types) {
+        this.cellSize = cellSize;
+        this.minRow = minRow;
+        this.minCol = minCol;
+        this.gridRows = gridRows;
+        this.gridCols = gridCols;
+        this.cellStarts = cellStarts;
+        this.neighbours = neighbours;
+        this.rows = rows;
+        this.cols = cols;
+        this.angles = angles;
+        this.types = types;
+    }
+
+    /**
+     * Builds the grid of a template.
+     *
+     * @param template the template of the minutiae.
+     * @param cellSize the side length of the cells, usually the maximum distance
+     *                 of the queries.
+     * @return the grid of the template.
+     */
+    public static MinutiaeGrid of(MinutiaeTemplate template, int cellSize) {
+        assert template != null;
+        assert cellSize > 0;
+        final int size = template.size();
+        int minRow = Integer.MAX_VALUE;
+        int minCol = Integer.MAX_VALUE;
+        int maxRow = Integer.MIN_VALUE;
+        int maxCol = Integer.MIN_VALUE;
+        for (int i = 0; i < size; i++) {
+            minRow = Math.min(minRow, template.row(i));
+            minCol = Math.min(minCol, template.col(i));
+            maxRow = Math.max(maxRow, template.row(i));
+            maxCol = Math.max(maxCol, template.col(i));
+        }
+        int gridRows = size == 0 ? 0 : (maxRow - minRow) / cellSize + 1;
+        int gridCols = size == 0 ? 0 : (maxCol - minCol) / cellSize + 1;
+
+        // counting sort of the minutiae by cell
+        int[] cells = new int[size];
+        int[] cellStarts = new int[gridRows * gridCols + 1];
+        for (int i = 0; i < size; i++) {
+            cells[i] = ((template.row(i) - minRow) / cellSize) * gridCols + (template.col(i) - minCol) / cellSize;
+            cellStarts[cells[i] + 1]++;
+        }
+        int[] neighbours = new int[(gridRows + 2) * (gridCols + 2)];
+        for (int gridRow = -1; gridRow <= gridRows; gridRow++)
+            for (int gridCol = -1; gridCol <= gridCols; gridCol++) {
+                int sum = 0;
+                for (int row = Math.max(0, gridRow - 1); row <= Math.min(gridRows - 1, gridRow + 1); row++)
+                    for (int col = Math.max(0, gridCol - 1); col <= Math.min(gridCols - 1, gridCol + 1); col++)
+                        sum += cellStarts[row * gridCols + col + 1]; // still the size of each cell
+                neighbours[(gridRow + 1) * (gridCols + 2) + gridCol + 1] = sum;
+            }
+        for (int cell = 0; cell < gridRows * gridCols; cell++)
+            cellStarts[cell + 1] += cellStarts[cell];
+        int[] next = new int[gridRows * gridCols];
+        System.arraycopy(cellStarts, 0, next, 0, next.length);
+        int[] rows = new int[size];
+        int[] cols = new int[size];
+        int[] angles = new int[size];
+        int[] types = new int[size];
+        for (int i = 0; i < size; i++) {
+            int position = next[cells[i]]++;
+            rows[position] = template.row(i);
+            cols[position] = template.col(i);
+            angles[position] = template.angle(i);
+            types[position] = template.type(i);
+        }
+        return new MinutiaeGrid(cellSize, minRow, minCol, gridRows, gridCols, cellStarts, neighbours, rows, cols, angles, types);
+    }
+
+    /**
+     * @return the side length of the cells.
+     */
+    public int cellSize() {
+        return cellSize;
+    }
+
+    /**
+     * Counts the minutiae of the grid that overlap a minutia of a template.
+     *
+     * @param other          the template of the other minutiae.
+     * @param maxDistance    the maximum distance between two minutiae to consider
+     *                       them as overlapping.
+     * @param maxOrientation the maximum difference of orientation between two
+     *                       minutiae to consider them as overlapping.
+     * @return the number of minutiae of the grid that overlap.
+     * @see Fingerprint#matchingMinutiaeCount(MinutiaeTemplate, MinutiaeTemplate, int, int)
+     */
+    public int count(MinutiaeTemplate other, int maxDistance, int maxOrientation) {
+        assert other != null;
+        return count(other.rows(), other.cols(), other.angles(), other.types(), other.size(),
+            maxDistance, maxOrientation, rows.length, false);
+    }
+
+    /**
+     * Checks if at least a given number of minutiae of the grid overlap a
+     * minutia of a template. The count stops as soon as it reaches the
+     * threshold, or as soon as the remaining minutiae of the template can't
+     * make it reach the threshold anymore.
+     *
+     * @param other          the template of the other minutiae.
+     * @param maxDistance    the maximum distance between two minutiae to consider
+     *                       them as overlapping.
+     * @param maxOrientation the maximum difference of orientation between two
+     *                       minutiae to consider them as overlapping.
+     * @param threshold      the number of overlapping minutiae to reach.
+     * @return <code>true</code> if the number of minutiae of the grid that
+     * overlap is at least <code>threshold</code>.
+     */
+    public boolean countAtLeast(MinutiaeTemplate other, int maxDistance, int maxOrientation, int threshold) {
+        assert other != null;
+        if (threshold <= 0) return true;
+        return count(other.rows(), other.cols(), other.angles(), other.types(), other.size(),
+            maxDistance, maxOrientation, threshold, true) >= threshold;
+    }
+
+    /**
+     * Counts the minutiae of the grid that overlap a minutia of a template once
+     * it is transformed, like <code>count(other.transform(centerRow,
+     * centerCol, rowTranslation, colTranslation, rotation), maxDistance,
+     * maxOrientation)</code>, without allocating.
+     *
+     * @param other          the template of the other minutiae.
+     * @param centerRow      the row around which the points are rotated.
+     * @param centerCol      the column around which the points are rotated.
+     * @param rowTranslation the vertical translation.
+     * @param colTranslation the horizontal translation.
+     * @param rotation       the rotation in degrees.
+     * @param maxDistance    the maximum distance between two minutiae to consider
+     *                       them as overlapping.
+     * @param maxOrientation the maximum difference of orientation between two
+     *                       minutiae to consider them as overlapping.
+     * @return the number of minutiae of the grid that overlap the transformed
+     * minutiae.
+     */
+    public int count(MinutiaeTemplate other,
+                     int centerRow,
+                     int centerCol,
+                     int rowTranslation,
+                     int colTranslation,
+                     int rotation,
+                     int maxDistance,
+                     int maxOrientation) {
+        assert other != null;
+        Scratch scratch = Scratch.of(Math.max(rows.length, other.size()));
+        MinutiaeTemplate.transform(other.rows(), other.cols(), other.angles(), other.size(),
+            centerRow, centerCol, rowTranslation, colTranslation, rotation,
+            scratch.rows, scratch.cols, scratch.angles);
+        return count(scratch.rows, scratch.cols, scratch.angles, other.types(), other.size(),
+            maxDistance, maxOrientation, rows.length, false);
+    }
+
+    /**
+     * Checks if at least a given number of minutiae of the grid overlap a
+     * minutia of a template once it is transformed, like
+     * <code>countAtLeast(other.transform(centerRow, centerCol, rowTranslation,
+     * colTranslation, rotation), maxDistance, maxOrientation, threshold)</code>.
+     * The transformed minutiae are written to buffers of the calling thread, so
+     * nothing is allocated.
+     *
+     * @param other          the template of the other minutiae.
+     * @param centerRow      the row around which the points are rotated.
+     * @param centerCol      the column around which the points are rotated.
+     * @param rowTranslation the vertical translation.
+     * @param colTranslation the horizontal translation.
+     * @param rotation       the rotation in degrees.
+     * @param maxDistance    the maximum distance between two minutiae to consider
+     *                       them as overlapping.
+     * @param maxOrientation the maximum difference of orientation between two
+     *                       minutiae to consider them as overlapping.
+     * @param threshold      the number of overlapping minutiae to reach.
+     * @return <code>true</code> if the number of minutiae of the grid that
+     * overlap the transformed minutiae is at least <code>threshold</code>.
+     */
+    public boolean countAtLeast(MinutiaeTemplate other,
+                                int centerRow,
+                                int centerCol,
+                                int rowTranslation,
+                                int colTranslation,
+                                int rotation,
+                                int maxDistance,
+                                int maxOrientation,
+                                int threshold) {
+        assert other != null;
+        if (threshold <= 0) return true;
+        Scratch scratch = Scratch.of(Math.max(rows.length, other.size()));
+        MinutiaeTemplate.transform(other.rows(), other.cols(), other.angles(), other.size(),
+            centerRow, centerCol, rowTranslation, colTranslation, rotation,
+            scratch.rows, scratch.cols, scratch.angles);
+        return count(scratch.rows, scratch.cols, scratch.angles, other.types(), other.size(),
+            maxDistance, maxOrientation, threshold, true) >= threshold;
+    }
+
+    /**
+     * @return the most minutiae of the grid that a minutia at <code>(row,
+     * col)</code> can overlap.
+     */
+    private int maxOverlaps(int row, int col, int maxDistance) {
+        if (maxDistance > cellSize) return rows.length; // more than the 3x3 cells around it
+        int gridRow = Math.floorDiv(row - minRow, cellSize) + 1;
+        int gridCol = Math.floorDiv(col - minCol, cellSize) + 1;
+        if (gridRow < 0 || gridRow > gridRows + 1 || gridCol < 0 || gridCol > gridCols + 1)
+            return 0; // too far from the grid
+        return neighbours[gridRow * (gridCols + 2) + gridCol];
+    }
+
+    /**
+     * Counts the minutiae of the grid that overlap one of the given minutiae,
+     * until the count reaches the threshold.
+     *
+     * @param otherRows   the rows of the other minutiae.
+     * @param otherCols   the columns of the other minutiae.
+     * @param otherAngles the angles of the other minutiae.
+     * @param otherTypes  the types of the other minutiae.
+     * @param otherSize   the number of other minutiae.
+     * @param bounded     <code>true</code> to also stop when the threshold can't
+     *                    be reached anymore.
+     * @return the number of minutiae of the grid that overlap, or the count so
+     * far if it stopped early.
+     */
+    private int count(int[] otherRows, int[] otherCols, int[] otherAngles, int[] otherTypes, int otherSize,
+                      int maxDistance, int maxOrientation, int threshold, boolean bounded) {
+        if (maxDistance < 0 || rows.length == 0) return 0;
+        final long maxDistanceSquared = (long) maxDistance * maxDistance;
+        // the most minutiae of the grid that the remaining minutiae of the template can overlap
+        long overlaps = 0;
+        if (bounded)
+            for (int j = 0; j < otherSize; j++)
+                overlaps += maxOverlaps(otherRows[j], otherCols[j], maxDistance);
+        Scratch scratch = Scratch.of(rows.length);
+        int[] marks = scratch.marks;
+        int mark = scratch.nextMark(); // marks[i] == mark if the minutia i already overlaps
+        int count = 0;
+        for (int j = 0; j < otherSize; j++) {
+            int row = otherRows[j];
+            int col = otherCols[j];
+            if (bounded) {
+                if (count + Math.min(rows.length - count, overlaps) < threshold)
+                    return count; // even if all the remaining minutiae overlap
+                overlaps -= maxOverlaps(row, col, maxDistance);
+            }
+            int angle = otherAngles[j];
+            int type = otherTypes[j];
+            // the cells that intersect the square around the minutia
+            int fromGridRow = Math.max(0, Math.floorDiv(row - maxDistance - minRow, cellSize));
+            int toGridRow = Math.min(gridRows - 1, Math.floorDiv(row + maxDistance - minRow, cellSize));
+            int fromGridCol = Math.max(0, Math.floorDiv(col - maxDistance - minCol, cellSize));
+            int toGridCol = Math.min(gridCols - 1, Math.floorDiv(col + maxDistance - minCol, cellSize));
+            for (int gridRow = fromGridRow; gridRow <= toGridRow; gridRow++)
+                for (int cell = gridRow * gridCols + fromGridCol; cell <= gridRow * gridCols + toGridCol; cell++)
+                    for (int i = cellStarts[cell]; i < cellStarts[cell + 1]; i++) {
+                        if (marks[i] == mark) continue;
+                        long a = rows[i] - row;
+                        long b = cols[i] - col;
+                        if (a * a + b * b <= maxDistanceSquared
+                            && Math.abs(angles[i] - angle) <= maxOrientation
+                            && (types[i] == MinutiaeTemplate.UNTYPED || type == MinutiaeTemplate.UNTYPED || types[i] == type)) {
+                            marks[i] = mark;
+                            if (++count == threshold) return count; // enough of them overlap
+                        }
+                    }
+        }
+        return count;
+    }
+
+    /**
+     * The buffers of a thread, grown as needed and reused by all the grids.
+     */
+    private static final class Scratch {
+
+        private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+        private int[] rows = new int[0];
+        private int[] cols = new int[0];
+        private int[] angles = new int[0];
+        // the minutiae of a grid marked during the current count, so the marks never need to be cleared
+        private int[] marks = new int[0];
+        private int mark;
+
+        /**
+         * @param size the number of minutiae the buffers must hold.
+         * @return the buffers of the calling thread.
+         */
+        static Scratch of(int size) {
+            Scratch scratch = SCRATCH.get();
+            if (scratch.rows.length < size) {
+                scratch.rows = new int[size];
+                scratch.cols = new int[size];
+                scratch.angles = new int[size];
+                scratch.marks = new int[size];
+                scratch.mark = 0;
+            }
+            return scratch;
+        }
+
+        /**
+         * @return a mark that is not in {@link #marks} yet.
+         */
+        int nextMark() {
+            if (++mark == 0) { // the marks of the previous counts would be ambiguous, start again
+                Arrays.fill(marks, 0);
+                mark = 1;
+            }
+            return mark;
+        }
+    }
+}
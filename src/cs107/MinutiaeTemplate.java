@@ -0,0 +1,385 @@
+package cs107;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The minutiae of a fingerprint, stored as one array per field instead of one
+ * array per minutia.
+ * <p>
+ * The matcher reads the same field of many minutiae in its inner loops, which
+ * is then a linear scan of a primitive array. A template is immutable: its
+ * arrays are never modified once it is built, so transformed templates share
+ * the arrays they don't change. The grid of its minutiae is only built when
+ * it is first compared to another template, then kept with it.
+ *
+ * @see Fingerprint#match(MinutiaeTemplate, MinutiaeTemplate)
+ */
+public final class MinutiaeTemplate {
+
+    /**
+     * The type of a minutia whose type is unknown, which can be paired with a
+     * minutia of any type.
+     */
+    public static final int UNTYPED = 0;
+
+    /**
+     * The number of coefficients of the spectrum of the orientations, see
+     * {@link #orientationSpectrum()}.
+     */
+    public static final int HARMONICS = 3;
+
+    private final int[] rows;
+    private final int[] cols;
+    private final int[] angles;
+    private final int[] types;
+    // the local descriptors of the minutiae, null unless they were asked for
+    private final MinutiaDescriptors descriptors;
+    // the grid of the last cell size asked for, built at most once per size by each thread
+    private volatile MinutiaeGrid grid;
+    // the spectrum of the histogram of the orientations, computed the first time it is asked for
+    private volatile double[] orientationSpectrum;
+
+    MinutiaeTemplate(int[] rows, int[] cols, int[] angles, int[] types) {
+        this(rows, cols, angles, types, null);
+    }
+
+    private MinutiaeTemplate(int[] rows, int[] cols, int[] angles, int[] types, MinutiaDescriptors descriptors) {
+        assert rows.length == cols.length && rows.length == angles.length && rows.length == types.length;
+        this.rows = rows;
+        this.cols = cols;
+        this.angles = angles;
+        this.types = types;
+        this.descriptors = descriptors;
+    }
+
+    /**
+     * Builds the template of a list of minutiae.
+     *
+     * @param minutiae the list of minutiae, with or without their type, as
+     *                 returned by {@link Fingerprint#extract(boolean[][])}.
+     * @return the template of the minutiae.
+     */
+    public static MinutiaeTemplate of(List<int[]> minutiae) {
+        assert minutiae != null;
+        int size = minutiae.size();
+        int[] rows = new int[size];
+        int[] cols = new int[size];
+        int[] angles = new int[size];
+        int[] types = new int[size];
+        for (int i = 0; i < size; i++) {
+            int[] minutia = minutiae.get(i);
+            rows[i] = minutia[0];
+            cols[i] = minutia[1];
+            angles[i] = minutia[2];
+            types[i] = minutia.length > 3 ? minutia[3] : UNTYPED;
+        }
+        return new MinutiaeTemplate(rows, cols, angles, types);
+    }
+
+    /**
+     * @return the list of the minutiae, with their type unless it is
+     * {@link #UNTYPED}.
+     */
+    public List<int[]> toList() {
+        var minutiae = new ArrayList<int[]>(rows.length);
+        for (int i = 0; i < rows.length; i++)
+            minutiae.add(types[i] == UNTYPED
+                ? new int[]{rows[i], cols[i], angles[i]}
+                : new int[]{rows[i], cols[i], angles[i], types[i]});
+        return minutiae;
+    }
+
+    /**
+     * @return the number of minutiae.
+     */
+    public int size() {
+        return rows.length;
+    }
+
+    /**
+     * @param index the index of the minutia.
+     * @return the row of the minutia.
+     */
+    public int row(int index) {
+        return rows[index];
+    }
+
+    /**
+     * @param index the index of the minutia.
+     * @return the column of the minutia.
+     */
+    public int col(int index) {
+        return cols[index];
+    }
+
+    /**
+     * @param index the index of the minutia.
+     * @return the angle of the minutia, in degrees.
+     */
+    public int angle(int index) {
+        return angles[index];
+    }
+
+    /**
+     * @param index the index of the minutia.
+     * @return the type of the minutia, {@link Fingerprint#ENDING},
+     * {@link Fingerprint#BIFURCATION} or {@link #UNTYPED}.
+     */
+    public int type(int index) {
+        return types[index];
+    }
+
+    /**
+     * Computes the local descriptors of the minutiae, with which
+     * {@link Fingerprint#match(MinutiaeTemplate, MinutiaeTemplate)} only
+     * aligns two templates on minutiae with similar neighbourhoods.
+     *
+     * @return the template of the same minutiae, with their descriptors.
+     * @see MinutiaDescriptors
+     */
+    public MinutiaeTemplate withDescriptors() {
+        if (descriptors != null) return this;
+        return new MinutiaeTemplate(rows, cols, angles, types, MinutiaDescriptors.of(this));
+    }
+
+    /**
+     * @return <code>true</code> if the template has the local descriptors of
+     * its minutiae, see {@link #withDescriptors()}.
+     */
+    public boolean hasDescriptors() {
+        return descriptors != null;
+    }
+
+    // the arrays themselves, for the loops of the package, they must not be modified
+    // @formatter:off
+    int[] rows()   { return rows; }
+    int[] cols()   { return cols; }
+    int[] angles() { return angles; }
+    int[] types()  { return types; }
+    // @formatter:on
+
+    /**
+     * Checks if two minutiae can be paired, which is when they have the same
+     * type or when one of them is {@link #UNTYPED}.
+     *
+     * @return <code>true</code> if the minutia <code>index1</code> of
+     * <code>template1</code> can be paired with the minutia <code>index2</code>
+     * of <code>template2</code>.
+     */
+    static boolean compatibleTypes(MinutiaeTemplate template1, int index1, MinutiaeTemplate template2, int index2) {
+        int type1 = template1.types[index1];
+        int type2 = template2.types[index2];
+        return type1 == UNTYPED || type2 == UNTYPED || type1 == type2;
+    }
+
+    /**
+     * Checks if two templates may be aligned on a pair of minutiae, which is
+     * when their types are compatible and, if both templates have descriptors,
+     * when their descriptors are similar.
+     *
+     * @return <code>true</code> if the minutia <code>index1</code> of
+     * <code>template1</code> may be aligned with the minutia
+     * <code>index2</code> of <code>template2</code>.
+     * @see #compatibleTypes(MinutiaeTemplate, int, MinutiaeTemplate, int)
+     * @see MinutiaDescriptors#similar(MinutiaDescriptors, int, MinutiaDescriptors, int)
+     */
+    static boolean canAnchor(MinutiaeTemplate template1, int index1, MinutiaeTemplate template2, int index2) {
+        if (!compatibleTypes(template1, index1, template2, index2)) return false;
+        return template1.descriptors == null || template2.descriptors == null
+            || MinutiaDescriptors.similar(template1.descriptors, index1, template2.descriptors, index2);
+    }
+
+    /**
+     * Applies a transformation to all the minutiae, like
+     * {@link Fingerprint#applyTransformation(List, int, int, int, int, int)}.
+     * The descriptors don't depend on the transformation and are kept.
+     *
+     * @param centerRow      the row around which the points are rotated.
+     * @param centerCol      the column around which the points are rotated.
+     * @param rowTranslation the vertical translation.
+     * @param colTranslation the horizontal translation.
+     * @param rotation       the rotation in degrees.
+     * @return the template of the transformed minutiae.
+     */
+    public MinutiaeTemplate transform(int centerRow, int centerCol, int rowTranslation, int colTranslation, int rotation) {
+        int[] newRows = new int[rows.length];
+        int[] newCols = new int[rows.length];
+        int[] newAngles = new int[rows.length];
+        transform(rows, cols, angles, rows.length, centerRow, centerCol, rowTranslation, colTranslation, rotation,
+            newRows, newCols, newAngles);
+        return new MinutiaeTemplate(newRows, newCols, newAngles, types, descriptors);
+    }
+
+    /**
+     * Transforms the first <code>size</code> minutiae of the given arrays into
+     * the target arrays, see
+     * {@link #transform(int, int, int, int, int)}.
+     */
+    static void transform(int[] rows, int[] cols, int[] angles, int size,
+                          int centerRow, int centerCol, int rowTranslation, int colTranslation, int rotation,
+                          int[] newRows, int[] newCols, int[] newAngles) {
+        double sinRot = Fingerprint.sin(rotation);
+        double cosRot = Fingerprint.cos(rotation);
+        for (int i = 0; i < size; i++) {
+            // center on new origin
+            int x = cols[i] - centerCol;
+            int y = centerRow - rows[i];
+            newRows[i] = (int) Math.round(centerRow - (x * sinRot + y * cosRot)) - rowTranslation;
+            newCols[i] = (int) Math.round(centerCol + (x * cosRot - y * sinRot)) - colTranslation;
+            newAngles[i] = (angles[i] + rotation) % 360;
+        }
+    }
+
+    /**
+     * @param cellSize the side length of the cells.
+     * @return the grid of the minutiae of this template.
+     */
+    MinutiaeGrid grid(int cellSize) {
+        MinutiaeGrid grid = this.grid;
+        if (grid == null || grid.cellSize() != cellSize) {
+            grid = MinutiaeGrid.of(this, cellSize);
+            this.grid = grid;
+        }
+        return grid;
+    }
+
+    /**
+     * Computes the spectrum of the histogram of the orientations of the
+     * minutiae, once per template.
+     * <p>
+     * The coefficient <code>k</code> is the mean of <code>e^(i k angle)</code>
+     * over the minutiae. Rotating the template only changes the phase of the
+     * coefficients, so their magnitudes can be compared without trying all
+     * the rotations, and without splitting the orientations in bins.
+     *
+     * @return the magnitudes of the coefficients <code>1</code> to
+     * {@link #HARMONICS}, between <code>0</code> and <code>1</code>. The array
+     * must not be modified.
+     */
+    double[] orientationSpectrum() {
+        double[] spectrum = orientationSpectrum;
+        if (spectrum == null) {
+            spectrum = new double[HARMONICS];
+            for (int harmonic = 1; rows.length > 0 && harmonic <= HARMONICS; harmonic++) {
+                double cosines = 0;
+                double sines = 0;
+                for (int angle : angles) {
+                    cosines += Math.cos(Math.toRadians(angle) * harmonic);
+                    sines += Math.sin(Math.toRadians(angle) * harmonic);
+                }
+                spectrum[harmonic - 1] = Math.hypot(cosines, sines) / rows.length;
+            }
+            orientationSpectrum = spectrum;
+        }
+        return spectrum;
+    }
+
+    /**
+     * Counts the minutiae of this template that overlap a minutia of another
+     * one, like
+     * {@link Fingerprint#matchingMinutiaeCount(List, List, int, int)}. Only the
+     * minutiae in the cells of the grid around each minutia of the other
+     * template are compared.
+     *
+     * @param other          the other template.
+     * @param maxDistance    the maximum distance between two minutiae to consider
+     *                       them as overlapping.
+     * @param maxOrientation the maximum difference of orientation between two
+     *                       minutiae to consider them as overlapping.
+     * @return the number of minutiae of this template that overlap.
+     */
+    public int matchingCount(MinutiaeTemplate other, int maxDistance, int maxOrientation) {
+        assert other != null;
+        return grid(Math.max(1, maxDistance)).count(other, maxDistance, maxOrientation);
+    }
+
+    /**
+     * Checks if at least a given number of minutiae of this template overlap a
+     * minutia of another one, stopping as soon as the answer is known.
+     *
+     * @param other          the other template.
+     * @param maxDistance    the maximum distance between two minutiae to consider
+     *                       them as overlapping.
+     * @param maxOrientation the maximum difference of orientation between two
+     *                       minutiae to consider them as overlapping.
+     * @param threshold      the number of overlapping minutiae to reach.
+     * @return <code>true</code> if <code>matchingCount(other, maxDistance,
+     * maxOrientation) >= threshold</code>.
+     * @see MinutiaeGrid#countAtLeast(MinutiaeTemplate, int, int, int)
+     */
+    public boolean matchingCountAtLeast(MinutiaeTemplate other, int maxDistance, int maxOrientation, int threshold) {
+        assert other != null;
+        return grid(Math.max(1, maxDistance)).countAtLeast(other, maxDistance, maxOrientation, threshold);
+    }
+
+    /**
+     * Counts the minutiae of this template that overlap a minutia of another
+     * one once it is transformed, without allocating.
+     *
+     * @param other          the other template.
+     * @param centerRow      the row around which the points of
+     *                       <code>other</code> are rotated.
+     * @param centerCol      the column around which the points of
+     *                       <code>other</code> are rotated.
+     * @param rowTranslation the vertical translation.
+     * @param colTranslation the horizontal translation.
+     * @param rotation       the rotation in degrees.
+     * @param maxDistance    the maximum distance between two minutiae to consider
+     *                       them as overlapping.
+     * @param maxOrientation the maximum difference of orientation between two
+     *                       minutiae to consider them as overlapping.
+     * @return <code>matchingCount(other.transform(centerRow, centerCol,
+     * rowTranslation, colTranslation, rotation), maxDistance,
+     * maxOrientation)</code>.
+     * @see MinutiaeGrid#count(MinutiaeTemplate, int, int, int, int, int, int, int)
+     */
+    public int matchingCount(MinutiaeTemplate other,
+                             int centerRow,
+                             int centerCol,
+                             int rowTranslation,
+                             int colTranslation,
+                             int rotation,
+                             int maxDistance,
+                             int maxOrientation) {
+        assert other != null;
+        return grid(Math.max(1, maxDistance)).count(other, centerRow, centerCol, rowTranslation, colTranslation,
+            rotation, maxDistance, maxOrientation);
+    }
+
+    /**
+     * Checks if at least a given number of minutiae of this template overlap a
+     * minutia of another one once it is transformed, without allocating.
+     *
+     * @param other          the other template.
+     * @param centerRow      the row around which the points of
+     *                       <code>other</code> are rotated.
+     * @param centerCol      the column around which the points of
+     *                       <code>other</code> are rotated.
+     * @param rowTranslation the vertical translation.
+     * @param colTranslation the horizontal translation.
+     * @param rotation       the rotation in degrees.
+     * @param maxDistance    the maximum distance between two minutiae to consider
+     *                       them as overlapping.
+     * @param maxOrientation the maximum difference of orientation between two
+     *                       minutiae to consider them as overlapping.
+     * @param threshold      the number of overlapping minutiae to reach.
+     * @return <code>true</code> if <code>matchingCount(other.transform(centerRow,
+     * centerCol, rowTranslation, colTranslation, rotation), maxDistance,
+     * maxOrientation) >= threshold</code>.
+     * @see MinutiaeGrid#countAtLeast(MinutiaeTemplate, int, int, int, int, int, int, int, int)
+     */
+    public boolean matchingCountAtLeast(MinutiaeTemplate other,
+                                        int centerRow,
+                                        int centerCol,
+                                        int rowTranslation,
+                                        int colTranslation,
+                                        int rotation,
+                                        int maxDistance,
+                                        int maxOrientation,
+                                        int threshold) {
+        assert other != null;
+        return grid(Math.max(1, maxDistance)).countAtLeast(other, centerRow, centerCol, rowTranslation, colTranslation,
+            rotation, maxDistance, maxOrientation, threshold);
+    }
+}
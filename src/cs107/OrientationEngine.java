@@ -0,0 +1,146 @@
+package cs107;
+
+import java.util.Arrays;
+
+/**
+ * Computes the orientation of minutiae like
+ * {@link Fingerprint#computeOrientation(boolean[][], int, int, int)}, without
+ * allocating.
+ * <p>
+ * The connected pixels are found by a breadth-first search from the minutia,
+ * and each pixel is added to the sums of the linear regression when it is
+ * reached. The queue of the search then holds every connected pixel, so the
+ * pixels above and under the normal of the slope are counted from it instead
+ * of from the window. The window is never materialised: visited pixels are
+ * marked with the number of the current call, so the marks never need to be
+ * cleared.
+ * <p>
+ * Each thread has its own engine, sized for the distance it was last used
+ * with.
+ */
+public final class OrientationEngine {
+
+    private static final ThreadLocal<OrientationEngine> ENGINES = new ThreadLocal<>();
+
+    private final int distance;
+    private final int squareSideLength;
+    // marks[rowIndex * squareSideLength + colIndex] == call if the pixel was reached during this call
+    private final int[] marks;
+    private int call;
+    // the window coordinates of the pixels reached by the search, in order
+    private final int[] queueRows;
+    private final int[] queueCols;
+
+    private OrientationEngine(int distance) {
+        this.distance = distance;
+        this.squareSideLength = 2 * distance + 1;
+        this.marks = new int[squareSideLength * squareSideLength];
+        this.queueRows = new int[squareSideLength * squareSideLength];
+        this.queueCols = new int[squareSideLength * squareSideLength];
+    }
+
+    /**
+     * @param distance the distance to be considered in each direction.
+     * @return the engine of the calling thread for this distance.
+     */
+    static OrientationEngine forDistance(int distance) {
+        assert distance >= 0;
+        OrientationEngine engine = ENGINES.get();
+        if (engine == null || engine.distance != distance) {
+            engine = new OrientationEngine(distance);
+            ENGINES.set(engine);
+        }
+        return engine;
+    }
+
+    /**
+     * Computes the orientation of the minutia that the coordinate <code>(row,
+     * col)</code>.
+     *
+     * @param image    array containing each pixel's boolean value.
+     * @param row      the first coordinate of the pixel of interest.
+     * @param col      the second coordinate of the pixel of interest.
+     * @param distance the distance to be considered in each direction to compute
+     *                 the orientation.
+     * @return The orientation in degrees.
+     * @see Fingerprint#computeOrientation(boolean[][], int, int, int)
+     */
+    public static int computeOrientation(boolean[][] image, int row, int col, int distance) {
+        assert image != null;
+        return forDistance(distance).orientation(image, row, col);
+    }
+
+    /**
+     * Computes the orientation of several minutiae of the same image.
+     *
+     * @param image    array containing each pixel's boolean value.
+     * @param rows     the first coordinate of each minutia.
+     * @param cols     the second coordinate of each minutia.
+     * @param distance the distance to be considered in each direction to compute
+     *                 the orientation.
+     * @return The orientation in degrees of each minutia.
+     * @see Fingerprint#computeOrientation(boolean[][], int, int, int)
+     */
+    public static int[] computeOrientations(boolean[][] image, int[] rows, int[] cols, int distance) {
+        assert image != null && rows != null && cols != null && rows.length == cols.length;
+        var engine = forDistance(distance);
+        int[] orientations = new int[rows.length];
+        for (int i = 0; i < rows.length; i++)
+            orientations[i] = engine.orientation(image, rows[i], cols[i]);
+        return orientations;
+    }
+
+    /**
+     * @return the orientation in degrees of the minutia at
+     * <code>(row, col)</code>.
+     */
+    int orientation(boolean[][] image, int row, int col) {
+        if (++call == 0) { // the marks of the previous calls would be ambiguous, start again
+            Arrays.fill(marks, 0);
+            call = 1;
+        }
+        long xySum = 0;
+        long xSquared = 0;
+        long ySquared = 0;
+        int size = 0;
+        if (image[row][col]) { // a white pixel isn't connected to anything
+            marks[distance * squareSideLength + distance] = call;
+            queueRows[size] = distance;
+            queueCols[size] = distance;
+            size++;
+        }
+        for (int head = 0; head < size; head++) {
+            int rowIndex = queueRows[head];
+            int colIndex = queueCols[head];
+            // @formatter:off
+            for (int neighbourRow = Math.max(0, rowIndex - 1); neighbourRow <= Math.min(squareSideLength - 1, rowIndex + 1); neighbourRow++)
+                for (int neighbourCol = Math.max(0, colIndex - 1); neighbourCol <= Math.min(squareSideLength - 1, colIndex + 1); neighbourCol++) {
+                    int imageRow = row - distance + neighbourRow; // coordinates of the neighbour in the image
+                    int imageCol = col - distance + neighbourCol;
+                    int mark = neighbourRow * squareSideLength + neighbourCol;
+                    if (marks[mark] == call
+                        || imageRow < 0 || imageRow >= image.length
+                        || imageCol < 0 || imageCol >= image[0].length
+                        || !image[imageRow][imageCol]
+                    ) continue;
+                    marks[mark] = call;
+                    queueRows[size] = neighbourRow;
+                    queueCols[size] = neighbourCol;
+                    size++;
+                    int x = neighbourCol - distance; // relative to the minutia
+                    int y = distance - neighbourRow;
+                    xySum += x * y;
+                    xSquared += x * x;
+                    ySquared += y * y;
+                }
+            // @formatter:on
+        }
+
+        double slope = Fingerprint.slope(xySum, xSquared, ySquared);
+        int pixelsAbove = 0;
+        for (int i = 1; i < size; i++) // the minutia itself is first and isn't counted
+            if (Fingerprint.isAbove(queueCols[i] - distance, distance - queueRows[i], slope)) pixelsAbove++;
+        int pixelsUnder = Math.max(0, size - 1) - pixelsAbove;
+        return Fingerprint.degrees(Fingerprint.angle(slope, pixelsAbove, pixelsUnder));
+    }
+}
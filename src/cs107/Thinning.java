@@ -0,0 +1,366 @@
+package cs107;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Faster variants of the thinning of {@link Fingerprint}, working on the same
+ * <code>boolean[][]</code> images and giving the same skeletons.
+ * <p>
+ * The 8 neighbours of a pixel are packed in a byte, called its neighbourhood,
+ * where bit <code>i</code> is the neighbour <code>i</code> as described in
+ * {@link Fingerprint#getNeighbours(boolean[][], int, int)}. Whether a black
+ * pixel is deleted only depends on its neighbourhood and on the step, so the
+ * decisions are looked up in a 256-entry table instead of being computed for
+ * every pixel.
+ */
+public final class Thinning {
+
+    /**
+     * Bit set in {@link #DECISIONS} if a black pixel is deleted by step 0.
+     */
+    private static final int DELETED_BY_STEP_0 = 1;
+
+    /**
+     * Bit set in {@link #DECISIONS} if a black pixel is deleted by step 1.
+     */
+    private static final int DELETED_BY_STEP_1 = 2;
+
+    /**
+     * The decision for each neighbourhood, taken from
+     * {@link Fingerprint#thinningStep(boolean[][], int)} on a 3x3 image so that
+     * both can never disagree.
+     */
+    private static final byte[] DECISIONS = new byte[256];
+
+    /**
+     * Per-thread second buffer used by {@link #thin(boolean[][])}, reallocated
+     * only when the dimensions of the image change.
+     */
+    private static final ThreadLocal<boolean[][]> SCRATCH = new ThreadLocal<>();
+
+    /**
+     * The minimum number of rows processed by one task of
+     * {@link #thinParallel(boolean[][], ForkJoinPool)}.
+     */
+    private static final int MIN_BAND_HEIGHT = 16;
+
+    static {
+        for (int neighbourhood = 0; neighbourhood < 256; neighbourhood++) {
+            boolean[][] image = new boolean[3][3];
+            image[1][1] = true;
+            // @formatter:off
+            image[0][1] = (neighbourhood & 0b0000_0001) != 0;
+            image[0][2] = (neighbourhood & 0b0000_0010) != 0;
+            image[1][2] = (neighbourhood & 0b0000_0100) != 0;
+            image[2][2] = (neighbourhood & 0b0000_1000) != 0;
+            image[2][1] = (neighbourhood & 0b0001_0000) != 0;
+            image[2][0] = (neighbourhood & 0b0010_0000) != 0;
+            image[1][0] = (neighbourhood & 0b0100_0000) != 0;
+            image[0][0] = (neighbourhood & 0b1000_0000) != 0;
+            // @formatter:on
+            int decision = 0;
+            if (!Fingerprint.thinningStep(image, 0)[1][1]) decision |= DELETED_BY_STEP_0;
+            if (!Fingerprint.thinningStep(image, 1)[1][1]) decision |= DELETED_BY_STEP_1;
+            DECISIONS[neighbourhood] = (byte) decision;
+        }
+    }
+
+    private Thinning() {
+    }
+
+    /**
+     * Packs the 8 neighbours of the pixel at coordinates <code>(row, col)</code>
+     * in a byte, without allocating.
+     * <p>
+     * If a neighbour is out of bounds of the image, it is considered white.
+     *
+     * @param image array containing each pixel's boolean value.
+     * @param row   the row of the pixel of interest, must be in the image.
+     * @param col   the column of the pixel of interest, must be in the image.
+     * @return the neighbourhood, bit <code>i</code> being the neighbour
+     * <code>i</code> of {@link Fingerprint#getNeighbours(boolean[][], int, int)}.
+     */
+    public static int neighbourhood(boolean[][] image, int row, int col) {
+        assert image != null;
+        assert row >= 0 && row < image.length && col >= 0 && col < image[0].length;
+        // @formatter:off
+        boolean topRowInImage      = (row > 0                    );
+        boolean rightColumnInImage = (col < (image[0].length - 1));
+        boolean bottomRowInImage   = (row < (image.length    - 1));
+        boolean leftColumnInImage  = (col > 0                    );
+
+        int neighbourhood = 0;
+        if (topRowInImage) {
+            boolean[] above = image[row - 1];
+            if (                      above[col    ]) neighbourhood |= 0b0000_0001;
+            if (rightColumnInImage && above[col + 1]) neighbourhood |= 0b0000_0010;
+            if (leftColumnInImage  && above[col - 1]) neighbourhood |= 0b1000_0000;
+        }
+        boolean[] current = image[row];
+        if (rightColumnInImage && current[col + 1]) neighbourhood |= 0b0000_0100;
+        if (leftColumnInImage  && current[col - 1]) neighbourhood |= 0b0100_0000;
+        if (bottomRowInImage) {
+            boolean[] below = image[row + 1];
+            if (rightColumnInImage && below[col + 1]) neighbourhood |= 0b0000_1000;
+            if (                      below[col    ]) neighbourhood |= 0b0001_0000;
+            if (leftColumnInImage  && below[col - 1]) neighbourhood |= 0b0010_0000;
+        }
+        // @formatter:on
+        return neighbourhood;
+    }
+
+    /**
+     * @param neighbourhood the neighbourhood of a black pixel, as returned by
+     *                      {@link #neighbourhood(boolean[][], int, int)}.
+     * @param step          the step to apply, Step 0 or Step 1.
+     * @return <code>true</code> if the pixel is deleted by the step.
+     */
+    public static boolean deletable(int neighbourhood, int step) {
+        assert neighbourhood >= 0 && neighbourhood < 256;
+        return (DECISIONS[neighbourhood] & (step == 0 ? DELETED_BY_STEP_0 : DELETED_BY_STEP_1)) != 0;
+    }
+
+    /**
+     * Compute the skeleton of a boolean image.
+     * <p>
+     * Only the returned array is allocated, the steps alternate between it and a
+     * pooled buffer of the calling thread.
+     *
+     * @param image array containing each pixel's boolean value, it is not
+     *              modified.
+     * @return array containing the boolean value of each pixel of the image after
+     * applying the thinning algorithm.
+     * @see Fingerprint#thin(boolean[][])
+     */
+    public static boolean[][] thin(boolean[][] image) {
+        assert image != null;
+        boolean[][] result = new boolean[image.length][];
+        for (int row = 0; row < image.length; row++)
+            result[row] = image[row].clone();
+        return thinInPlace(result, scratch(image.length, image[0].length));
+    }
+
+    /**
+     * Compute the skeleton of a boolean image without allocating, alternating
+     * between the image and the given buffer.
+     *
+     * @param image   array containing each pixel's boolean value, it is
+     *                replaced by its skeleton.
+     * @param scratch a buffer with the same dimensions as <code>image</code>,
+     *                its content is overwritten.
+     * @return <code>image</code>, containing the skeleton.
+     */
+    public static boolean[][] thinInPlace(boolean[][] image, boolean[][] scratch) {
+        assert image != null && scratch != null && image != scratch;
+        assert image.length == scratch.length && image[0].length == scratch[0].length;
+        int deleted;
+        do { // the second step writes back into image, so no swap is needed
+            deleted = thinningStep(image, scratch, 0);
+            deleted += thinningStep(scratch, image, 1);
+        } while (deleted != 0); // repeat if there was a change
+        return image;
+    }
+
+    /**
+     * Compute the skeleton of a boolean image on the common pool.
+     *
+     * @param image array containing each pixel's boolean value, it is not
+     *              modified.
+     * @return array containing the boolean value of each pixel of the image after
+     * applying the thinning algorithm.
+     * @see #thinParallel(boolean[][], ForkJoinPool)
+     */
+    public static boolean[][] thinParallel(boolean[][] image) {
+        return thinParallel(image, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Compute the skeleton of a boolean image, splitting each step in bands of
+     * rows processed in parallel.
+     * <p>
+     * A band writes its own rows of the target and reads one more row on each
+     * side of the source, its halo. The source is never written during a step
+     * and each step waits for all of its bands, so the halos are always up to
+     * date and the skeleton is identical to {@link #thin(boolean[][])}.
+     *
+     * @param image array containing each pixel's boolean value, it is not
+     *              modified.
+     * @param pool  the pool running the bands.
+     * @return array containing the boolean value of each pixel of the image after
+     * applying the thinning algorithm.
+     */
+    public static boolean[][] thinParallel(boolean[][] image, ForkJoinPool pool) {
+        assert image != null && pool != null;
+        boolean[][] result = new boolean[image.length][];
+        for (int row = 0; row < image.length; row++)
+            result[row] = image[row].clone();
+        // not the pooled scratch: a worker may run another thinning while waiting for the bands
+        boolean[][] scratch = new boolean[image.length][image[0].length];
+        int bandHeight = Math.max(MIN_BAND_HEIGHT, image.length / (4 * pool.getParallelism()) + 1);
+        int deleted;
+        do { // the second step writes back into result, so no swap is needed
+            deleted = parallelThinningStep(result, scratch, 0, pool, bandHeight);
+            deleted += parallelThinningStep(scratch, result, 1, pool, bandHeight);
+        } while (deleted != 0); // repeat if there was a change
+        return result;
+    }
+
+    /**
+     * Applies a step to all the bands of the image in parallel, and waits for
+     * all of them.
+     *
+     * @return the number of pixels deleted by the step.
+     */
+    private static int parallelThinningStep(boolean[][] source,
+                                            boolean[][] target,
+                                            int step,
+                                            ForkJoinPool pool,
+                                            int bandHeight) {
+        int bands = (source.length + bandHeight - 1) / bandHeight;
+        int deleted = 0;
+        for (int bandDeleted : Bands.invoke(pool, bands, band -> thinningStep(
+            source,
+            target,
+            step,
+            band * bandHeight,
+            Math.min(source.length, (band + 1) * bandHeight))))
+            deleted += bandDeleted;
+        return deleted;
+    }
+
+    /**
+     * Returns the pooled buffer of the calling thread, with the given
+     * dimensions. Its content is unspecified.
+     */
+    static boolean[][] scratch(int height, int width) {
+        boolean[][] scratch = SCRATCH.get();
+        if (scratch == null || scratch.length != height || scratch[0].length != width) {
+            scratch = new boolean[height][width];
+            SCRATCH.set(scratch);
+        }
+        return scratch;
+    }
+
+    /**
+     * Compute the skeleton of a boolean image, rescanning only the pixels whose
+     * neighbourhood changed.
+     * <p>
+     * A black pixel kept by a step stays kept by that step until one of its
+     * neighbours is deleted. Each step therefore keeps a worklist of the pixels
+     * to check: at first the black pixels touching a white one, then the black
+     * neighbours of the deleted pixels. The thinning stops once both worklists
+     * are empty, so the work follows the contours instead of the whole image.
+     *
+     * @param image array containing each pixel's boolean value, it is not
+     *              modified.
+     * @return array containing the boolean value of each pixel of the image after
+     * applying the thinning algorithm.
+     * @see Fingerprint#thin(boolean[][])
+     */
+    public static boolean[][] thinIncremental(boolean[][] image) {
+        assert image != null;
+        final int height = image.length;
+        final int width = image[0].length;
+        boolean[][] result = new boolean[height][];
+        for (int row = 0; row < height; row++)
+            result[row] = image[row].clone();
+
+        // pixels are stored as row * width + col, bit s of queued is set if the pixel is in worklists[s]
+        byte[] queued = new byte[height * width];
+        IntList[] worklists = {new IntList(height + width), new IntList(height + width)};
+        IntList deleted = new IntList(height + width);
+
+        for (int row = 0; row < height; row++) // interior pixels have 8 black neighbours, they are never deleted
+            for (int col = 0; col < width; col++)
+                if (result[row][col] && neighbourhood(result, row, col) != 0xFF) {
+                    worklists[0].add(row * width + col);
+                    worklists[1].add(row * width + col);
+                    queued[row * width + col] = 0b11;
+                }
+
+        int step = 0;
+        while (!worklists[0].isEmpty() || !worklists[1].isEmpty()) {
+            IntList worklist = worklists[step];
+            int flag = 1 << step;
+            for (int i = 0; i < worklist.size(); i++) {
+                int pixel = worklist.get(i);
+                int row = pixel / width;
+                int col = pixel % width;
+                queued[pixel] &= ~flag;
+                // the pixel may have been deleted by the other step since it was queued
+                if (result[row][col] && deletable(neighbourhood(result, row, col), step))
+                    deleted.add(pixel);
+            }
+            worklist.clear();
+
+            // every decision of a step is taken on the image before the step
+            for (int i = 0; i < deleted.size(); i++)
+                result[deleted.get(i) / width][deleted.get(i) % width] = false;
+            for (int i = 0; i < deleted.size(); i++) {
+                int row = deleted.get(i) / width;
+                int col = deleted.get(i) % width;
+                for (int neighbourRow = Math.max(0, row - 1); neighbourRow <= Math.min(height - 1, row + 1); neighbourRow++)
+                    for (int neighbourCol = Math.max(0, col - 1); neighbourCol <= Math.min(width - 1, col + 1); neighbourCol++) {
+                        int neighbour = neighbourRow * width + neighbourCol;
+                        if (!result[neighbourRow][neighbourCol]) continue;
+                        if ((queued[neighbour] & 0b01) == 0) worklists[0].add(neighbour);
+                        if ((queued[neighbour] & 0b10) == 0) worklists[1].add(neighbour);
+                        queued[neighbour] = 0b11;
+                    }
+            }
+            deleted.clear();
+            step = 1 - step;
+        }
+        return result;
+    }
+
+    /**
+     * Same as {@link Fingerprint#thinningStep(boolean[][], int)}, using the
+     * decision table and no allocation per pixel.
+     *
+     * @param image array containing each pixel's boolean value.
+     * @param step  the step to apply, Step 0 or Step 1.
+     * @return A new array containing each pixel's value after the step.
+     */
+    public static boolean[][] thinningStep(boolean[][] image, int step) {
+        assert image != null;
+        boolean[][] newImage = new boolean[image.length][image[0].length];
+        thinningStep(image, newImage, step);
+        return newImage;
+    }
+
+    /**
+     * Applies a step of the thinning, writing the result into a caller-provided
+     * array.
+     *
+     * @param source array containing each pixel's boolean value, it is not
+     *               modified.
+     * @param target array with the same dimensions as <code>source</code>,
+     *               receiving each pixel's value after the step.
+     * @param step   the step to apply, Step 0 or Step 1.
+     * @return the number of pixels deleted by the step.
+     */
+    public static int thinningStep(boolean[][] source, boolean[][] target, int step) {
+        assert source != null && target != null && source != target;
+        assert source.length == target.length && source[0].length == target[0].length;
+        return thinningStep(source, target, step, 0, source.length);
+    }
+
+    /**
+     * Applies a step of the thinning to the rows <code>[fromRow, toRow)</code>.
+     * The rows around the range are read but only the range is written.
+     */
+    static int thinningStep(boolean[][] source, boolean[][] target, int step, int fromRow, int toRow) {
+        int deleted = 0;
+        for (int row = fromRow; row < toRow; row++) {
+            boolean[] sourceRow = source[row];
+            boolean[] targetRow = target[row];
+            for (int col = 0; col < sourceRow.length; col++) {
+                boolean delete = sourceRow[col] && deletable(neighbourhood(source, row, col), step);
+                targetRow[col] = sourceRow[col] && !delete;
+                if (delete) deleted++;
+            }
+        }
+        return deleted;
+    }
+}